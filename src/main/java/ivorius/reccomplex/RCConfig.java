@@ -59,6 +59,25 @@ public class RCConfig
 
     public static float mazePlacementReversesPerRoom;
 
+    public static boolean directBlockPlacement;
+    public static int lightUpdatesPerTick;
+
+    public static float structureGenerationTickBudget;
+    public static int structurePreparationThreads;
+    public static int terrainReadThreads;
+
+    public static boolean strictChunkGeneration;
+
+    public static int chunkGenerationCostBudget;
+    public static int tickGenerationCostBudget;
+
+    public static float pregenerationTickBudget;
+    public static float pregenerationMinTPS;
+    public static float pregenerationMaxMemory;
+
+    public static int simulationMaxChunks;
+    public static int simulationMaxHeightmapChunks;
+
     public static void loadConfig(String configID)
     {
         if (configID == null || configID.equals(CATEGORY_GENERAL))
@@ -108,6 +127,20 @@ public class RCConfig
             );
 
             mazePlacementReversesPerRoom = RecurrentComplex.config.getFloat("mazePlacementReversesPerRoom", CATEGORY_BALANCING, 10, -1, 100, "Maximum number of reverses per room the maze generator can do. A higher number results in a better generation success rate, but may freeze the server temporarily.");
+
+            directBlockPlacement = RecurrentComplex.config.getBoolean("directBlockPlacement", CATEGORY_BALANCING, false, "Enabling this will make structures write their blocks directly into chunk sections, which is a lot faster for big structures. Placed blocks don't receive onBlockAdded, and lighting is resolved in one go after each structure.");
+            lightUpdatesPerTick = RecurrentComplex.config.getInt("lightUpdatesPerTick", CATEGORY_BALANCING, 0, 0, 100000, "With directBlockPlacement, spreads the light updates of placed structures over the following ticks. Each world relights at most this many changed chunk sections (16x16x16 blocks) per tick, independent of other worlds. 0 relights right after each structure.");
+            structureGenerationTickBudget = RecurrentComplex.config.getFloat("structureGenerationTickBudget", CATEGORY_BALANCING, 0.0f, 0.0f, 1000.0f, "If above 0, naturally spawning structures are only planned during chunk population and then generated chunk by chunk on world ticks, taking at most this many milliseconds per tick. 0 generates them during chunk population.");
+            structurePreparationThreads = RecurrentComplex.config.getInt("structurePreparationThreads", CATEGORY_BALANCING, 0, 0, 64, "With structureGenerationTickBudget, the number of worker threads that prepare scheduled structures (solving mazes, picking sub-structures) before they are generated. 0 prepares them on the server thread.");
+            terrainReadThreads = RecurrentComplex.config.getInt("terrainReadThreads", CATEGORY_BALANCING, 0, 0, 64, "The number of worker threads that scan the terrain below big structures for their surface height, while the server waits for them. Helps with big structures on servers with many cores. 0 scans on the server thread.");
+            strictChunkGeneration = RecurrentComplex.config.getBoolean("strictChunkGeneration", CATEGORY_BALANCING, false, "Enabling this will make structures generate only in chunks that are already populated, leaving the rest to generate when those chunks populate. This avoids generating further chunks during chunk population (cascading world generation). Chunks that are still loaded during structure generation are logged.");
+            chunkGenerationCostBudget = RecurrentComplex.config.getInt("chunkGenerationCostBudget", CATEGORY_BALANCING, 0, 0, Integer.MAX_VALUE, "The estimated cost of structures a single chunk may spawn naturally, about one per placed block. Structures beyond it are skipped. The first structure always spawns. 0 is unlimited.");
+            tickGenerationCostBudget = RecurrentComplex.config.getInt("tickGenerationCostBudget", CATEGORY_BALANCING, 0, 0, Integer.MAX_VALUE, "The estimated cost of structures a world may generate per tick, about one per placed block. Natural structures beyond it are scheduled for later ticks instead. 0 is unlimited.");
+            pregenerationTickBudget = RecurrentComplex.config.getFloat("pregenerationTickBudget", CATEGORY_BALANCING, 20.0f, 1.0f, 1000.0f, "The number of milliseconds per world tick /#pregen may spend populating chunks.");
+            pregenerationMinTPS = RecurrentComplex.config.getFloat("pregenerationMinTPS", CATEGORY_BALANCING, 18.0f, 1.0f, 20.0f, "/#pregen pauses while the server's mean ticks per second are below this.");
+            pregenerationMaxMemory = RecurrentComplex.config.getFloat("pregenerationMaxMemory", CATEGORY_BALANCING, 0.85f, 0.1f, 1.0f, "/#pregen pauses while the server uses more than this fraction of its maximum memory, to let chunks unload.");
+            simulationMaxChunks = RecurrentComplex.config.getInt("simulationMaxChunks", CATEGORY_BALANCING, 65536, 1, Integer.MAX_VALUE, "The largest number of chunks /#simulate may look at. It runs on the server thread, which waits until it's done.");
+            simulationMaxHeightmapChunks = RecurrentComplex.config.getInt("simulationMaxHeightmapChunks", CATEGORY_BALANCING, 1024, 1, Integer.MAX_VALUE, "The largest number of chunks /#simulate may look at with heightmap, which generates the terrain of each chunk.");
         }
 
         RecurrentComplex.proxy.loadConfig(configID);
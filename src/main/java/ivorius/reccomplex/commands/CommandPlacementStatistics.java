@@ -0,0 +1,68 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.commands;
+
+import ivorius.reccomplex.RCConfig;
+import ivorius.reccomplex.RecurrentComplex;
+import ivorius.reccomplex.utils.ServerTranslations;
+import ivorius.reccomplex.worldgen.PlacementStatistics;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.ICommandSender;
+
+import java.util.List;
+
+/**
+ * Shows how many natural structure placements were accepted since the server started, and at which check the
+ * rejected ones failed.
+ */
+public class CommandPlacementStatistics extends CommandBase
+{
+    @Override
+    public String getCommandName()
+    {
+        return RCConfig.commandPrefix + "stats";
+    }
+
+    public int getRequiredPermissionLevel()
+    {
+        return 2;
+    }
+
+    @Override
+    public String getCommandUsage(ICommandSender var1)
+    {
+        return ServerTranslations.usage("commands.rcstats.usage");
+    }
+
+    @Override
+    public void processCommand(ICommandSender commandSender, String[] args)
+    {
+        if (args.length >= 1)
+        {
+            if (!args[0].equals("reset"))
+                throw ServerTranslations.wrongUsageException("commands.rcstats.usage");
+
+            RecurrentComplex.logger.info("Placement statistics before reset: " + PlacementStatistics.summary());
+            PlacementStatistics.reset();
+            commandSender.addChatMessage(ServerTranslations.format("commands.rcstats.reset"));
+        }
+        else
+        {
+            commandSender.addChatMessage(ServerTranslations.format("commands.rcstats.accepted", PlacementStatistics.accepted()));
+            for (PlacementStatistics.Stage stage : PlacementStatistics.Stage.values())
+                commandSender.addChatMessage(ServerTranslations.format("commands.rcstats.rejected", stage.name().toLowerCase(), PlacementStatistics.rejections(stage)));
+        }
+    }
+
+    @Override
+    public List addTabCompletionOptions(ICommandSender commandSender, String[] args)
+    {
+        if (args.length == 1)
+            return getListOfStringsMatchingLastWord(args, "reset");
+
+        return null;
+    }
+}
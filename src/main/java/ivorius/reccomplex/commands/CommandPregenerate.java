@@ -0,0 +1,95 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.commands;
+
+import ivorius.reccomplex.RCConfig;
+import ivorius.reccomplex.utils.ServerTranslations;
+import ivorius.reccomplex.worldgen.RegionPregenerator;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.util.ChunkCoordinates;
+import net.minecraft.util.MathHelper;
+import net.minecraft.world.World;
+
+import java.util.List;
+
+/**
+ * Populates all chunks in a region on world ticks, and with it generates their structures.
+ */
+public class CommandPregenerate extends CommandBase
+{
+    @Override
+    public String getCommandName()
+    {
+        return RCConfig.commandPrefix + "pregen";
+    }
+
+    public int getRequiredPermissionLevel()
+    {
+        return 2;
+    }
+
+    @Override
+    public String getCommandUsage(ICommandSender var1)
+    {
+        return ServerTranslations.usage("commands.rcpregen.usage");
+    }
+
+    @Override
+    public void processCommand(ICommandSender commandSender, String[] args)
+    {
+        World world = commandSender.getEntityWorld();
+
+        if (args.length >= 4)
+        {
+            ChunkCoordinates coords = commandSender.getPlayerCoordinates();
+            int x1 = MathHelper.floor_double(func_110666_a(commandSender, (double) coords.posX, args[0]));
+            int z1 = MathHelper.floor_double(func_110666_a(commandSender, (double) coords.posZ, args[1]));
+            int x2 = MathHelper.floor_double(func_110666_a(commandSender, (double) coords.posX, args[2]));
+            int z2 = MathHelper.floor_double(func_110666_a(commandSender, (double) coords.posZ, args[3]));
+            boolean includeExisting = args.length >= 5 && args[4].equals("existing");
+
+            RegionPregenerator pregenerator = RegionPregenerator.getOrCreate(world);
+            pregenerator.start(x1 >> 4, z1 >> 4, x2 >> 4, z2 >> 4, includeExisting);
+
+            commandSender.addChatMessage(ServerTranslations.format("commands.rcpregen.start", pregenerator.total()));
+        }
+        else if (args.length == 0 || args[0].equals("status") || args[0].equals("stop"))
+        {
+            RegionPregenerator pregenerator = RegionPregenerator.get(world);
+            if (pregenerator == null || !pregenerator.isRunning())
+                throw ServerTranslations.commandException("commands.rcpregen.none");
+
+            if (args.length >= 1 && args[0].equals("stop"))
+            {
+                pregenerator.stop(world);
+                commandSender.addChatMessage(ServerTranslations.format("commands.rcpregen.stop", pregenerator.processed(), pregenerator.total()));
+            }
+            else
+            {
+                commandSender.addChatMessage(ServerTranslations.format("commands.rcpregen.status", pregenerator.processed(), pregenerator.total(),
+                        String.format("%.1f", pregenerator.chunksPerSecond()), String.format("%.2f", pregenerator.structuresPerSecond())));
+                if (pregenerator.isPaused())
+                    commandSender.addChatMessage(ServerTranslations.format("commands.rcpregen.paused"));
+            }
+        }
+        else
+            throw ServerTranslations.wrongUsageException("commands.rcpregen.usage");
+    }
+
+    @Override
+    public List addTabCompletionOptions(ICommandSender commandSender, String[] args)
+    {
+        if (args.length == 1)
+            return getListOfStringsMatchingLastWord(args, "stop", "status", "~");
+        else if (args.length <= 4)
+            return getListOfStringsMatchingLastWord(args, "~");
+        else if (args.length == 5)
+            return getListOfStringsMatchingLastWord(args, "existing");
+
+        return null;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.commands;
+
+import ivorius.reccomplex.RCConfig;
+import ivorius.reccomplex.RecurrentComplex;
+import ivorius.reccomplex.utils.ServerTranslations;
+import ivorius.reccomplex.worldgen.SpawnSimulation;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.util.ChunkCoordinates;
+import net.minecraft.util.MathHelper;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Counts the natural structures that would spawn in a region, without generating them. The density map is logged.
+ */
+public class CommandSimulateSpawns extends CommandBase
+{
+    public static final int MAX_RESULTS = 10;
+
+    @Override
+    public String getCommandName()
+    {
+        return RCConfig.commandPrefix + "simulate";
+    }
+
+    public int getRequiredPermissionLevel()
+    {
+        return 2;
+    }
+
+    @Override
+    public String getCommandUsage(ICommandSender var1)
+    {
+        return ServerTranslations.usage("commands.rcsimulate.usage");
+    }
+
+    @Override
+    public void processCommand(ICommandSender commandSender, String[] args)
+    {
+        if (args.length < 4)
+            throw ServerTranslations.wrongUsageException("commands.rcsimulate.usage");
+
+        World world = commandSender.getEntityWorld();
+        ChunkCoordinates coords = commandSender.getPlayerCoordinates();
+        int x1 = MathHelper.floor_double(func_110666_a(commandSender, (double) coords.posX, args[0]));
+        int z1 = MathHelper.floor_double(func_110666_a(commandSender, (double) coords.posZ, args[1]));
+        int x2 = MathHelper.floor_double(func_110666_a(commandSender, (double) coords.posX, args[2]));
+        int z2 = MathHelper.floor_double(func_110666_a(commandSender, (double) coords.posZ, args[3]));
+        boolean heightmap = args.length >= 5 && args[4].equals("heightmap");
+
+        int minChunkX = Math.min(x1, x2) >> 4, minChunkZ = Math.min(z1, z2) >> 4, maxChunkX = Math.max(x1, x2) >> 4, maxChunkZ = Math.max(z1, z2) >> 4;
+        long chunks = (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+        int maxChunks = heightmap ? RCConfig.simulationMaxHeightmapChunks : RCConfig.simulationMaxChunks;
+        if (chunks > maxChunks)
+            throw ServerTranslations.commandException("commands.rcsimulate.tooLarge", maxChunks);
+
+        SpawnSimulation.Result result = SpawnSimulation.simulate(world, minChunkX, minChunkZ, maxChunkX, maxChunkZ, heightmap);
+
+        commandSender.addChatMessage(ServerTranslations.format("commands.rcsimulate.result", result.chunks, result.total(), result.rejected, result.millis));
+        if (heightmap && !result.heightmap)
+            commandSender.addChatMessage(ServerTranslations.format("commands.rcsimulate.noHeightmap"));
+
+        List<String> structureIDs = new ArrayList<>(result.counts.keySet());
+        structureIDs.sort((o1, o2) -> Integer.compare(result.counts.get(o2), result.counts.get(o1)));
+
+        for (int i = 0; i < structureIDs.size() && i < MAX_RESULTS; i++)
+        {
+            String structureID = structureIDs.get(i);
+            commandSender.addChatMessage(ServerTranslations.format("commands.rcsimulate.structure", structureID, result.counts.get(structureID),
+                    String.format("%.4f", result.counts.get(structureID) / (double) result.chunks)));
+        }
+
+        RecurrentComplex.logger.info(String.format("Simulated %d chunks in %d ms: %d structures, %d rejected", result.chunks, result.millis, result.total(), result.rejected));
+        for (String structureID : structureIDs)
+            RecurrentComplex.logger.info(String.format("%s: %d", structureID, result.counts.get(structureID)));
+        RecurrentComplex.logger.info(String.format("Density map, %d x %d chunks per character:", result.cellSize, result.cellSize));
+        for (String line : result.densityMap())
+            RecurrentComplex.logger.info("|" + line + "|");
+
+        commandSender.addChatMessage(ServerTranslations.format("commands.rcsimulate.map"));
+    }
+
+    @Override
+    public List addTabCompletionOptions(ICommandSender commandSender, String[] args)
+    {
+        if (args.length <= 4)
+            return getListOfStringsMatchingLastWord(args, "~");
+        else if (args.length == 5)
+            return getListOfStringsMatchingLastWord(args, "heightmap");
+
+        return null;
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.commands;
+
+import ivorius.reccomplex.RCConfig;
+import ivorius.reccomplex.structures.StructureRegistry;
+import ivorius.reccomplex.utils.ServerTranslations;
+import ivorius.reccomplex.worldgen.GenerationBudget;
+import net.minecraft.command.CommandBase;
+import net.minecraft.command.ICommandSender;
+import net.minecraft.world.World;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Shows the estimated generation costs of structures, and how much of the generation budget is used.
+ */
+public class CommandStructureCosts extends CommandBase
+{
+    public static final int MAX_RESULTS = 10;
+
+    @Override
+    public String getCommandName()
+    {
+        return RCConfig.commandPrefix + "costs";
+    }
+
+    public int getRequiredPermissionLevel()
+    {
+        return 2;
+    }
+
+    @Override
+    public String getCommandUsage(ICommandSender var1)
+    {
+        return ServerTranslations.usage("commands.rccosts.usage");
+    }
+
+    @Override
+    public void processCommand(ICommandSender commandSender, String[] args)
+    {
+        final StructureRegistry registry = StructureRegistry.INSTANCE;
+
+        if (args.length >= 1)
+        {
+            String strucKey = args[0];
+
+            if (!registry.hasStructure(strucKey))
+                throw ServerTranslations.commandException("commands.structure.notRegistered", strucKey);
+
+            commandSender.addChatMessage(ServerTranslations.format("commands.rccosts.structure", strucKey, registry.getCost(strucKey)));
+        }
+        else
+        {
+            List<String> structureIDs = new ArrayList<>(registry.getAllGeneratingStructureKeys());
+            structureIDs.sort((o1, o2) -> Integer.compare(registry.getCost(o2), registry.getCost(o1)));
+
+            for (int i = 0; i < structureIDs.size() && i < MAX_RESULTS; i++)
+                commandSender.addChatMessage(ServerTranslations.format("commands.rccosts.structure", structureIDs.get(i), registry.getCost(structureIDs.get(i))));
+
+            World world = commandSender.getEntityWorld();
+            GenerationBudget budget = GenerationBudget.get(world);
+            commandSender.addChatMessage(ServerTranslations.format("commands.rccosts.budget",
+                    budget.used(world), RCConfig.tickGenerationCostBudget, RCConfig.chunkGenerationCostBudget, budget.totalUsed(), budget.deferred()));
+        }
+    }
+
+    @Override
+    public List addTabCompletionOptions(ICommandSender commandSender, String[] args)
+    {
+        if (args.length == 1)
+        {
+            Set<String> allStructureNames = StructureRegistry.INSTANCE.allStructureIDs();
+
+            return getListOfStringsFromIterableMatchingLastWord(args, allStructureNames);
+        }
+
+        return null;
+    }
+}
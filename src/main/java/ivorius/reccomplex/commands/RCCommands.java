@@ -80,6 +80,10 @@ public class RCCommands
         event.registerServerCommand(lookup = new CommandLookupStructure());
         event.registerServerCommand(list = new CommandListStructures());
         event.registerServerCommand(new CommandSearchStructure());
+        event.registerServerCommand(new CommandStructureCosts());
+        event.registerServerCommand(new CommandPlacementStatistics());
+        event.registerServerCommand(new CommandPregenerate());
+        event.registerServerCommand(new CommandSimulateSpawns());
 
         event.registerServerCommand(new CommandBrowseFiles());
     }
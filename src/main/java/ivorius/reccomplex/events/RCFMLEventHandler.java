@@ -9,9 +9,15 @@ import cpw.mods.fml.client.event.ConfigChangedEvent;
 import cpw.mods.fml.common.FMLCommonHandler;
 import cpw.mods.fml.common.eventhandler.SubscribeEvent;
 import cpw.mods.fml.common.gameevent.TickEvent;
+import cpw.mods.fml.relauncher.Side;
 import ivorius.reccomplex.RCConfig;
 import ivorius.reccomplex.RecurrentComplex;
 import ivorius.reccomplex.entities.StructureEntityInfo;
+import ivorius.reccomplex.worldgen.LightUpdateQueue;
+import ivorius.reccomplex.worldgen.RegionPregenerator;
+import ivorius.reccomplex.worldgen.StructureGenerationData;
+import ivorius.reccomplex.worldgen.StructureGenerationScheduler;
+import net.minecraft.world.World;
 
 /**
  * Created by lukas on 24.05.14.
@@ -40,6 +46,18 @@ public class RCFMLEventHandler
         {
             RecurrentComplex.communicationHandler.handleMessages(event.type == TickEvent.Type.SERVER, true);
         }
+
+        if (event.type == TickEvent.Type.WORLD && event.phase == TickEvent.Phase.END && event.side == Side.SERVER)
+        {
+            World world = ((TickEvent.WorldTickEvent) event).world;
+
+            if (RCConfig.structureGenerationTickBudget > 0 || RCConfig.tickGenerationCostBudget > 0)
+                StructureGenerationScheduler.tick(world, RCConfig.structureGenerationTickBudget);
+            if (RCConfig.lightUpdatesPerTick > 0)
+                LightUpdateQueue.tick(world, RCConfig.lightUpdatesPerTick);
+            RegionPregenerator.tick(world);
+            StructureGenerationData.tick(world);
+        }
     }
 
     @SubscribeEvent
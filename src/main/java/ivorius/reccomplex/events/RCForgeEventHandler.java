@@ -12,6 +12,7 @@ import cpw.mods.fml.relauncher.Side;
 import cpw.mods.fml.relauncher.SideOnly;
 import ivorius.ivtoolkit.rendering.grid.GridRenderer;
 import ivorius.reccomplex.RCConfig;
+import ivorius.reccomplex.RecurrentComplex;
 import ivorius.reccomplex.client.rendering.SelectionRenderer;
 import ivorius.reccomplex.entities.StructureEntityInfo;
 import ivorius.reccomplex.items.ItemInputHandler;
@@ -24,6 +25,8 @@ import net.minecraft.entity.item.EntityItem;
 import net.minecraft.entity.player.EntityPlayer;
 import net.minecraft.item.ItemStack;
 import net.minecraft.util.MathHelper;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.gen.structure.StructureBoundingBox;
 import net.minecraftforge.client.event.MouseEvent;
 import net.minecraftforge.client.event.RenderWorldLastEvent;
@@ -31,6 +34,7 @@ import net.minecraftforge.common.MinecraftForge;
 import net.minecraftforge.event.entity.EntityEvent;
 import net.minecraftforge.event.entity.EntityJoinWorldEvent;
 import net.minecraftforge.event.terraingen.PopulateChunkEvent;
+import net.minecraftforge.event.world.ChunkEvent;
 import org.apache.commons.lang3.tuple.Pair;
 import org.lwjgl.opengl.GL11;
 
@@ -61,6 +65,18 @@ public class RCForgeEventHandler
         worldGenStructures.generate(event.rand, event.chunkX, event.chunkZ, event.world, event.chunkProvider, event.chunkProvider);
     }
 
+    @SubscribeEvent
+    public void onChunkLoad(ChunkEvent.Load event)
+    {
+        if (RCConfig.strictChunkGeneration && WorldGenStructures.isPopulating() && !event.world.isRemote)
+        {
+            ChunkCoordIntPair populating = WorldGenStructures.getPopulatingChunk();
+            Chunk chunk = event.getChunk();
+            RecurrentComplex.logger.warn(String.format("Chunk [%d, %d] was loaded while generating structures in chunk [%d, %d] (cascading world generation)",
+                    chunk.xPosition, chunk.zPosition, populating.chunkXPos, populating.chunkZPos));
+        }
+    }
+
     @SubscribeEvent
     public void onEntityConstruction(EntityEvent.EntityConstructing event)
     {
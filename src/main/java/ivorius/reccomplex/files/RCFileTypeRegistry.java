@@ -7,6 +7,7 @@ package ivorius.reccomplex.files;
 
 import ivorius.ivtoolkit.tools.IvFileHelper;
 import ivorius.reccomplex.RecurrentComplex;
+import ivorius.reccomplex.structures.StructureRegistry;
 import ivorius.reccomplex.structures.schematics.SchematicLoader;
 import net.minecraft.util.ResourceLocation;
 
@@ -43,19 +44,21 @@ public class RCFileTypeRegistry extends FileTypeRegistry
 
     public void reloadCustomFiles(Collection<String> suffices)
     {
-        clearCustomFiles(suffices);
-
-        File structuresFile = IvFileHelper.getValidatedFolder(getBaseStructuresDirectory());
-        if (structuresFile != null)
-        {
-            tryLoadAll(suffices, structuresFile, RCFileTypeRegistry.ACTIVE_DIR_NAME, true, "", true, true);
-            tryLoadAll(suffices, structuresFile, RCFileTypeRegistry.INACTIVE_DIR_NAME, true, "", false, true);
-
-            // Legacy
-            tryLoadAll(suffices, structuresFile, "genericStructures", false, "", true, true);
-            tryLoadAll(suffices, structuresFile, "silentStructures", false, "", false, true);
-            tryLoadAll(suffices, structuresFile, "inventoryGenerators", false, "", true, true);
-        }
+        StructureRegistry.INSTANCE.batch(() -> {
+            clearCustomFiles(suffices);
+
+            File structuresFile = IvFileHelper.getValidatedFolder(getBaseStructuresDirectory());
+            if (structuresFile != null)
+            {
+                tryLoadAll(suffices, structuresFile, RCFileTypeRegistry.ACTIVE_DIR_NAME, true, "", true, true);
+                tryLoadAll(suffices, structuresFile, RCFileTypeRegistry.INACTIVE_DIR_NAME, true, "", false, true);
+
+                // Legacy
+                tryLoadAll(suffices, structuresFile, "genericStructures", false, "", true, true);
+                tryLoadAll(suffices, structuresFile, "silentStructures", false, "", false, true);
+                tryLoadAll(suffices, structuresFile, "inventoryGenerators", false, "", true, true);
+            }
+        });
     }
 
     protected void tryLoadAll(Collection<String> suffices, File structuresFile, String activeDirName, boolean create, String domain, boolean active, boolean custom)
@@ -72,14 +75,16 @@ public class RCFileTypeRegistry extends FileTypeRegistry
 
     public void loadFilesFromMod(String modid, Collection<String> suffices)
     {
-        modid = modid.toLowerCase();
+        String domain = modid.toLowerCase();
 
-        tryLoadAll(new ResourceLocation(modid, "structures/" + RCFileTypeRegistry.ACTIVE_DIR_NAME), new FileLoadContext(modid, true, false));
-        tryLoadAll(new ResourceLocation(modid, "structures/" + RCFileTypeRegistry.INACTIVE_DIR_NAME), new FileLoadContext(modid, false, false));
+        StructureRegistry.INSTANCE.batch(() -> {
+            tryLoadAll(new ResourceLocation(domain, "structures/" + RCFileTypeRegistry.ACTIVE_DIR_NAME), new FileLoadContext(domain, true, false));
+            tryLoadAll(new ResourceLocation(domain, "structures/" + RCFileTypeRegistry.INACTIVE_DIR_NAME), new FileLoadContext(domain, false, false));
 
-        // Legacy
-        tryLoadAll(new ResourceLocation(modid, "structures/genericStructures"), new FileLoadContext(modid, true, false));
-        tryLoadAll(new ResourceLocation(modid, "structures/silentStructures"), new FileLoadContext(modid, false, false));
-        tryLoadAll(new ResourceLocation(modid, "structures/inventoryGenerators"), new FileLoadContext(modid, true, false));
+            // Legacy
+            tryLoadAll(new ResourceLocation(domain, "structures/genericStructures"), new FileLoadContext(domain, true, false));
+            tryLoadAll(new ResourceLocation(domain, "structures/silentStructures"), new FileLoadContext(domain, false, false));
+            tryLoadAll(new ResourceLocation(domain, "structures/inventoryGenerators"), new FileLoadContext(domain, true, false));
+        });
     }
 }
@@ -226,7 +226,7 @@ public class WorldScriptMazeGenerator implements WorldScript<WorldScriptMazeGene
     public InstanceData prepareInstanceData(StructurePrepareContext context, BlockCoord coord, World world)
     {
         InstanceData instanceData = new InstanceData();
-        instanceData.placedStructures.addAll(WorldGenMaze.convertToPlacedStructures(context.random, coord, structureShift, getPlacedRooms(context.random, context.transform), roomSize, context.transform));
+        instanceData.placedStructures.addAll(WorldGenMaze.convertToPlacedStructures(context.registry, context.random, coord, structureShift, getPlacedRooms(context.registry, context.random, context.transform), roomSize, context.transform));
         return instanceData;
     }
 
@@ -236,7 +236,7 @@ public class WorldScriptMazeGenerator implements WorldScript<WorldScriptMazeGene
         return new InstanceData(nbt instanceof NBTTagCompound ? (NBTTagCompound) nbt : new NBTTagCompound());
     }
 
-    public List<ShiftedMazeComponent<MazeComponentStructure<Connector>, Connector>> getPlacedRooms(Random random, AxisAlignedTransform2D transform)
+    public List<ShiftedMazeComponent<MazeComponentStructure<Connector>, Connector>> getPlacedRooms(StructureRegistry.Snapshot registry, Random random, AxisAlignedTransform2D transform)
     {
         if (rooms.isEmpty())
             return null;
@@ -256,7 +256,7 @@ public class WorldScriptMazeGenerator implements WorldScript<WorldScriptMazeGene
         final int[] outsideBoundsHigher = IvVecMathHelper.add(boundsHigher, oneArray);
         final int[] outsideBoundsLower = IvVecMathHelper.sub(boundsLower, oneArray);
 
-        List<MazeComponentStructure<Connector>> transformedComponents = WorldGenMaze.transformedComponents(StructureRegistry.INSTANCE.getStructuresInMaze(mazeID), factory, transform, blockedConnections);
+        List<MazeComponentStructure<Connector>> transformedComponents = WorldGenMaze.transformedComponents(registry, registry.getStructuresInMaze(mazeID), factory, transform, blockedConnections);
 
         MorphingMazeComponent<Connector> maze = new SetMazeComponent<>();
 
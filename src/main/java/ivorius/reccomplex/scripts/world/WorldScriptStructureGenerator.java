@@ -181,7 +181,7 @@ public class WorldScriptStructureGenerator implements WorldScript<WorldScriptStr
             if (structureNames.size() > 0)
             {
                 String structureID = structureNames.get(random.nextInt(structureNames.size()));
-                StructureInfo structureInfo = StructureRegistry.INSTANCE.getStructure(structureID);
+                StructureInfo structureInfo = context.registry.getStructure(structureID);
 
                 if (structureInfo != null)
                 {
@@ -193,19 +193,19 @@ public class WorldScriptStructureGenerator implements WorldScript<WorldScriptStr
                     BlockCoord strucCoord = transform.apply(structureShift, new int[]{1, 1, 1})
                             .subtract(transform.apply(new BlockCoord(0, 0, 0), strucSize)).add(coord);
 
-                    instanceData = new WorldScriptStructureGenerator.InstanceData(structureID, strucCoord, strucTransform, structureInfo.prepareInstanceData(new StructurePrepareContext(random, strucTransform, StructureInfos.structureBoundingBox(strucCoord, strucSize), context.generateAsSource)));
+                    instanceData = new WorldScriptStructureGenerator.InstanceData(structureID, strucCoord, strucTransform, structureInfo.prepareInstanceData(new StructurePrepareContext(random, strucTransform, StructureInfos.structureBoundingBox(strucCoord, strucSize), context.generateAsSource, context.registry)));
                 }
             }
         }
         else
         {
-            Collection<Pair<StructureInfo, StructureListGenerationInfo>> generationInfos = StructureRegistry.INSTANCE.getStructuresInList(structureListID, front);
+            Collection<Pair<StructureInfo, StructureListGenerationInfo>> generationInfos = context.registry.getStructuresInList(structureListID, front);
 
             if (generationInfos.size() > 0)
             {
                 Pair<StructureInfo, StructureListGenerationInfo> pair = WeightedSelector.select(random, generationInfos, item -> item.getRight().getWeight());
                 StructureInfo structureInfo = pair.getLeft();
-                String structureID = StructureRegistry.INSTANCE.structureID(structureInfo);
+                String structureID = context.registry.structureID(structureInfo);
                 StructureListGenerationInfo generationInfo = pair.getRight();
 
                 boolean mirrorX;
@@ -229,7 +229,7 @@ public class WorldScriptStructureGenerator implements WorldScript<WorldScriptStr
                 BlockCoord strucCoord = transform.apply(structureShift.add(generationInfo.shiftX, generationInfo.shiftY, generationInfo.shiftZ), new int[]{1, 1, 1})
                         .subtract(transform.apply(new BlockCoord(0, 0, 0), strucSize)).add(coord);
 
-                instanceData = new WorldScriptStructureGenerator.InstanceData(structureID, strucCoord, strucTransform, structureInfo.prepareInstanceData(new StructurePrepareContext(random, strucTransform, StructureInfos.structureBoundingBox(strucCoord, strucSize), context.generateAsSource)));
+                instanceData = new WorldScriptStructureGenerator.InstanceData(structureID, strucCoord, strucTransform, structureInfo.prepareInstanceData(new StructurePrepareContext(random, strucTransform, StructureInfos.structureBoundingBox(strucCoord, strucSize), context.generateAsSource, context.registry)));
             }
         }
 
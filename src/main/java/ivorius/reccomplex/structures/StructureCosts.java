@@ -0,0 +1,116 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.structures;
+
+import ivorius.ivtoolkit.blocks.BlockCoord;
+import ivorius.ivtoolkit.math.AxisAlignedTransform2D;
+import ivorius.reccomplex.RecurrentComplex;
+import ivorius.reccomplex.blocks.TileEntitySpawnScript;
+import ivorius.reccomplex.scripts.world.WorldScript;
+import ivorius.reccomplex.scripts.world.WorldScriptMazeGenerator;
+import ivorius.reccomplex.scripts.world.WorldScriptMulti;
+import ivorius.reccomplex.structures.generic.GenericStructureInfo;
+import ivorius.reccomplex.structures.generic.StructureTemplate;
+import ivorius.reccomplex.structures.generic.transformers.Transformer;
+import ivorius.reccomplex.structures.generic.transformers.TransformerRuins;
+import ivorius.reccomplex.structures.generic.transformers.TransformerSingleBlock;
+import net.minecraft.block.material.Material;
+import net.minecraft.tileentity.TileEntity;
+
+/**
+ * A rough estimate of how much work generating a structure is, in the time it takes to place a single block.
+ * Used to budget generation per chunk and tick (see {@link ivorius.reccomplex.worldgen.GenerationBudget}).
+ */
+public class StructureCosts
+{
+    public static final int BLOCK_COST = 1;
+    public static final int TILE_ENTITY_COST = 10;
+    /**
+     * Generating tile entities usually spawn more structures, whose cost isn't known up front.
+     */
+    public static final int GENERATING_TILE_ENTITY_COST = 200;
+    public static final int PILLAR_COST = 16;
+
+    public static int estimate(StructureInfo info)
+    {
+        if (info instanceof GenericStructureInfo)
+        {
+            try
+            {
+                return estimate((GenericStructureInfo) info);
+            }
+            catch (Exception e)
+            {
+                RecurrentComplex.logger.warn("Failed estimating structure cost", e);
+            }
+        }
+
+        int[] size = info.structureBoundingBox();
+        return size[0] * size[1] * size[2] * BLOCK_COST;
+    }
+
+    protected static int estimate(GenericStructureInfo info)
+    {
+        StructureTemplate template = info.template();
+
+        int[] paletteCounts = new int[template.paletteSize()];
+        for (int index = 0; index < template.volume(); index++)
+            paletteCounts[template.paletteIndex(index)]++;
+
+        long cost = 0;
+
+        for (int p = 0; p < paletteCounts.length; p++)
+        {
+            if (template.paletteState(p).getBlock().getMaterial() != Material.air)
+                cost += paletteCounts[p] * BLOCK_COST;
+        }
+
+        cost += template.tileEntityCount() * TILE_ENTITY_COST;
+
+        for (Transformer transformer : info.transformers)
+        {
+            if (transformer instanceof TransformerRuins)
+                cost += template.volume() * BLOCK_COST;
+            else if (transformer instanceof TransformerSingleBlock)
+            {
+                TransformerSingleBlock singleBlock = (TransformerSingleBlock) transformer;
+
+                for (int p = 0; p < paletteCounts.length; p++)
+                    cost += (long) paletteCounts[p] * singleBlock.estimateCost(template.paletteState(p));
+            }
+        }
+
+        for (TileEntity tileEntity : template.createGeneratingTileEntities(template.mapping(AxisAlignedTransform2D.ORIGINAL), new BlockCoord(0, 0, 0)).valueCollection())
+        {
+            cost += GENERATING_TILE_ENTITY_COST;
+
+            if (tileEntity instanceof TileEntitySpawnScript)
+                cost += scriptCost(((TileEntitySpawnScript) tileEntity).script);
+        }
+
+        return (int) Math.min(cost, Integer.MAX_VALUE);
+    }
+
+    protected static long scriptCost(WorldScript script)
+    {
+        if (script instanceof WorldScriptMulti)
+        {
+            long cost = 0;
+            for (WorldScript child : ((WorldScriptMulti) script).scripts)
+                cost += scriptCost(child);
+            return cost;
+        }
+        else if (script instanceof WorldScriptMazeGenerator)
+        {
+            // Rooms are filled with other structures, assume they are about as full as this one
+            WorldScriptMazeGenerator maze = (WorldScriptMazeGenerator) script;
+            int[] roomSize = maze.getRoomSize();
+            return (long) maze.getRooms().mazeRooms(true).size() * roomSize[0] * roomSize[1] * roomSize[2] * BLOCK_COST;
+        }
+
+        return 0;
+    }
+}
@@ -50,7 +50,7 @@ public class StructureInfos
 
     public static StructureBoundingBox chunkBoundingBox(int chunkX, int chunkZ)
     {
-        return new StructureBoundingBox(chunkX << 4, chunkZ << 4, chunkX << 4 + 15, chunkZ << 4 + 15);
+        return new StructureBoundingBox(chunkX << 4, chunkZ << 4, (chunkX << 4) + 15, (chunkZ << 4) + 15);
     }
 
     public static StructureBoundingBox intersection(StructureBoundingBox bb1, StructureBoundingBox bb2)
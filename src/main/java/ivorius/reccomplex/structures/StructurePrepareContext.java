@@ -27,12 +27,24 @@ public class StructurePrepareContext
 
     public final boolean generateAsSource;
 
-    public StructurePrepareContext(@Nonnull Random random, @Nonnull AxisAlignedTransform2D transform, @Nonnull StructureBoundingBox boundingBox, boolean generateAsSource)
+    /**
+     * Preparation may run on another thread, so it looks up structures here rather than in the live registry.
+     */
+    @Nonnull
+    public final StructureRegistry.Snapshot registry;
+
+    public StructurePrepareContext(@Nonnull Random random, @Nonnull AxisAlignedTransform2D transform, @Nonnull StructureBoundingBox boundingBox, boolean generateAsSource, @Nonnull StructureRegistry.Snapshot registry)
     {
         this.random = random;
         this.transform = transform;
         this.boundingBox = boundingBox;
         this.generateAsSource = generateAsSource;
+        this.registry = registry;
+    }
+
+    public StructurePrepareContext(@Nonnull Random random, @Nonnull AxisAlignedTransform2D transform, @Nonnull StructureBoundingBox boundingBox, boolean generateAsSource)
+    {
+        this(random, transform, boundingBox, generateAsSource, StructureRegistry.INSTANCE.snapshot());
     }
 
     public int[] boundingBoxSize()
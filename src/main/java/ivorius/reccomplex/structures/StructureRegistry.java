@@ -5,9 +5,7 @@
 
 package ivorius.reccomplex.structures;
 
-import com.google.common.collect.Collections2;
-import com.google.common.collect.Maps;
-import com.google.common.collect.Sets;
+import com.google.common.collect.*;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonSyntaxException;
@@ -36,6 +34,8 @@ import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
@@ -52,12 +52,10 @@ public class StructureRegistry
     private CustomizableBiMap<String, StructureInfo> allStructures = new CustomizableBiMap<>();
     private CustomizableMap<String, StructureData> structureData = new CustomizableMap<>();
 
-    private boolean needsGenerationCacheUpdate = true;
-    private Set<String> generatingStructures = new HashSet<>();
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(0, ImmutableBiMap.of(), ImmutableSet.of()));
 
-    private Map<Class<? extends StructureGenerationInfo>, Collection<Pair<StructureInfo, ? extends StructureGenerationInfo>>> cachedGeneration = new HashMap<>();
-
-    private Map<Pair<Integer, String>, StructureSelector> structureSelectors = new HashMap<>();
+    private int batches;
+    private boolean changed;
 
     private Gson gson = createGson();
 
@@ -74,7 +72,7 @@ public class StructureRegistry
         return builder.create();
     }
 
-    public boolean registerStructure(StructureInfo info, String key, String domain, boolean generates, boolean custom)
+    public synchronized boolean registerStructure(StructureInfo info, String key, String domain, boolean generates, boolean custom)
     {
         StructureRegistrationEvent.Pre event = new StructureRegistrationEvent.Pre(key, info, generates);
         RCEventBus.INSTANCE.post(event);
@@ -85,8 +83,7 @@ public class StructureRegistry
             RecurrentComplex.logger.info(String.format(baseString, key));
 
             structureData.put(key, new StructureData(!event.shouldGenerate, domain), custom);
-
-            clearCaches();
+            changed();
 
             RCEventBus.INSTANCE.post(new StructureRegistrationEvent.Post(key, info, generates));
 
@@ -97,14 +94,56 @@ public class StructureRegistry
         return false;
     }
 
+    /**
+     * Runs the changes without publishing a snapshot after each of them. The snapshot is published once the outermost
+     * batch ends, so until then {@link #snapshot()} returns the state from before.
+     */
+    public void batch(Runnable changes)
+    {
+        synchronized (this)
+        {
+            batches++;
+        }
+
+        try
+        {
+            changes.run();
+        }
+        finally
+        {
+            synchronized (this)
+            {
+                if (--batches == 0 && changed)
+                    publish();
+            }
+        }
+    }
+
+    /**
+     * @return The registry's current state. Stays the same while the registry changes, so it can be read from any
+     * thread without locking.
+     */
+    public Snapshot snapshot()
+    {
+        return snapshot.get();
+    }
+
     public boolean hasStructure(String key)
     {
-        return allStructures.getMap().containsKey(key);
+        return snapshot().hasStructure(key);
     }
 
     public StructureInfo getStructure(String key)
     {
-        return allStructures.getMap().get(key);
+        return snapshot().getStructure(key);
+    }
+
+    /**
+     * @return The estimated cost of generating the structure, see {@link StructureCosts}.
+     */
+    public int getCost(String key)
+    {
+        return snapshot().getCost(key);
     }
 
     @Deprecated
@@ -115,24 +154,23 @@ public class StructureRegistry
 
     public String structureID(StructureInfo structureInfo)
     {
-        return allStructures.getMap().inverse().get(structureInfo);
+        return snapshot().structureID(structureInfo);
     }
 
-    public void clearCustom()
+    public synchronized void clearCustom()
     {
         structureData.clearCustom();
         allStructures.clearCustom();
+
+        changed();
     }
 
-    public void unregisterStructure(String key, boolean custom)
+    public synchronized void unregisterStructure(String key, boolean custom)
     {
-        StructureInfo info = allStructures.remove(key, custom);
+        allStructures.remove(key, custom);
         structureData.remove(key, custom);
 
-        if (info != null)
-            generatingStructures.remove(key);
-
-        clearCaches();
+        changed();
     }
 
     public GenericStructureInfo createStructureFromJSON(String jsonData) throws JsonSyntaxException
@@ -145,52 +183,34 @@ public class StructureRegistry
         return gson.toJson(structureInfo, GenericStructureInfo.class);
     }
 
-    public Set<StructureInfo> getAllStructures()
+    public String createJSONFromTransformer(Transformer transformer)
     {
-        return Collections.unmodifiableSet(allStructures.getMap().values());
+        return gson.toJson(transformer, Transformer.class);
     }
 
-    private void ensureGenerationCache()
+    public Set<StructureInfo> getAllStructures()
     {
-        if (needsGenerationCacheUpdate)
-        {
-            needsGenerationCacheUpdate = false;
-            generatingStructures.clear();
-
-            for (Map.Entry<String, StructureInfo> entry : allStructures.getMap().entrySet())
-            {
-                StructureInfo info = entry.getValue();
-                String key = entry.getKey();
-                StructureData structureData = this.structureData.getMap().get(key);
-
-                if (!structureData.disabled
-                        && RCConfig.shouldStructureGenerate(key, structureData.domain)
-                        && info.areDependenciesResolved())
-                    generatingStructures.add(key);
-            }
-        }
+        return snapshot().getAllStructures();
     }
 
     public Set<StructureInfo> getAllGeneratingStructures()
     {
-        ensureGenerationCache();
-        return Collections.unmodifiableSet(Maps.filterKeys(allStructures.getMap(), input -> generatingStructures.contains(input)).values());
+        return snapshot().getAllGeneratingStructures();
     }
 
     public Set<String> getAllGeneratingStructureKeys()
     {
-        return Collections.unmodifiableSet(generatingStructures);
+        return snapshot().getAllGeneratingStructureKeys();
     }
 
     public boolean isStructureGenerating(String key)
     {
-        ensureGenerationCache();
-        return generatingStructures.contains(key);
+        return snapshot().isStructureGenerating(key);
     }
 
     public Map<String, StructureInfo> structureMap()
     {
-        return Collections.unmodifiableMap(allStructures.getMap());
+        return snapshot().structureMap();
     }
 
     @Deprecated
@@ -201,80 +221,37 @@ public class StructureRegistry
 
     public Set<String> allStructureIDs()
     {
-        return Collections.unmodifiableSet(allStructures.getMap().keySet());
-    }
-
-    protected <T extends StructureGenerationInfo> Collection<Pair<StructureInfo, T>> getCachedGeneration(Class<T> clazz)
-    {
-        return (Collection<Pair<StructureInfo, T>>) ((Map) cachedGeneration).get(clazz);
+        return snapshot().allStructureIDs();
     }
 
     public <T extends StructureGenerationInfo> Collection<Pair<StructureInfo, T>> getStructureGenerations(Class<T> clazz)
     {
-        Collection<Pair<StructureInfo, T>> pairs = getCachedGeneration(clazz);
-        if (pairs != null)
-            return pairs;
-
-        pairs = new ArrayList<>();
-        for (StructureInfo info : getAllGeneratingStructures())
-        {
-            List<T> generationInfos = info.generationInfos(clazz);
-            for (T t : generationInfos)
-                pairs.add(Pair.of(info, t));
-        }
-
-        ((ArrayList) pairs).trimToSize();
-        cachedGeneration.put(clazz, (Collection) pairs);
-
-        return pairs;
+        return snapshot().getStructureGenerations(clazz);
     }
 
     public <T extends StructureGenerationInfo> Collection<Pair<StructureInfo, T>> getStructureGenerations(Class<T> clazz, final Predicate<Pair<StructureInfo, T>> predicate)
     {
-        return Collections2.filter(getStructureGenerations(clazz), predicate::test);
+        return snapshot().getStructureGenerations(clazz, predicate);
     }
 
     public StructureSelector getStructureSelector(BiomeGenBase biome, WorldProvider provider)
     {
-        Pair<Integer, String> pair = new ImmutablePair<>(provider.dimensionId, biome.biomeName);
-        StructureSelector structureSelector = structureSelectors.get(pair);
-
-        if (structureSelector == null || !structureSelector.isValid(biome, provider))
-        {
-            structureSelector = new StructureSelector(getAllGeneratingStructures(), biome, provider);
-            structureSelectors.put(pair, structureSelector);
-        }
-
-        return structureSelector;
+        return snapshot().getStructureSelector(biome, provider);
     }
 
     public Collection<Pair<StructureInfo, StructureListGenerationInfo>> getStructuresInList(final String listID, final ForgeDirection front)
     {
-        return getStructureGenerations(StructureListGenerationInfo.class, input -> listID.equals(input.getRight().listID)
-                && (front == null || input.getLeft().isRotatable() || input.getRight().front == front));
+        return snapshot().getStructuresInList(listID, front);
     }
 
     public Collection<Pair<StructureInfo, MazeGenerationInfo>> getStructuresInMaze(final String mazeID)
     {
-        return getStructureGenerations(MazeGenerationInfo.class, input -> {
-            MazeGenerationInfo info = input.getRight();
-            return mazeID.equals(info.mazeID) && info.mazeComponent.isValid();
-        });
-    }
-
-    private boolean chunkContains(int chunkX, int chunkZ, int x, int z)
-    {
-        return (x >> 4) == chunkX && (z >> 4) == chunkZ;
+        return snapshot().getStructuresInMaze(mazeID);
     }
 
     public Collection<Pair<StructureInfo, StaticGenerationInfo>> getStaticStructuresAt(final int chunkX, final int chunkZ, final World world, final ChunkCoordinates spawnPos)
     {
-        return getStructureGenerations(StaticGenerationInfo.class, input -> {
-            StaticGenerationInfo info = input.getRight();
-            return info.dimensionMatcher.apply(world.provider)
-                    && chunkContains(chunkX, chunkZ, info.getPositionX(spawnPos), info.getPositionZ(spawnPos)
-            );
-        });
+        return snapshot().getStaticStructuresAt(chunkX, chunkZ, world, spawnPos);
     }
 
     public SerializableStringTypeRegistry<Transformer> getTransformerRegistry()
@@ -287,11 +264,36 @@ public class StructureRegistry
         return structureGenerationInfoRegistry;
     }
 
-    private void clearCaches()
+    private void changed()
+    {
+        if (batches > 0)
+            changed = true;
+        else
+            publish();
+    }
+
+    /**
+     * Replaces the snapshot with one of the registry's current state. Readers holding the old one are unaffected.
+     */
+    private void publish()
     {
-        structureSelectors.clear();
-        cachedGeneration.clear();
-        needsGenerationCacheUpdate = true;
+        changed = false;
+
+        ImmutableSet.Builder<String> generatingStructures = ImmutableSet.builder();
+        for (Map.Entry<String, StructureInfo> entry : allStructures.getMap().entrySet())
+        {
+            StructureInfo info = entry.getValue();
+            String key = entry.getKey();
+            StructureData structureData = this.structureData.getMap().get(key);
+
+            if (!structureData.disabled
+                    && RCConfig.shouldStructureGenerate(key, structureData.domain)
+                    && info.areDependenciesResolved())
+                generatingStructures.add(key);
+        }
+
+        Snapshot previous = snapshot.get();
+        snapshot.set(new Snapshot(previous.version + 1, ImmutableBiMap.copyOf(allStructures.getMap()), generatingStructures.build()));
 
         updateVanillaGenerations();
         for (Pair<StructureInfo, VanillaStructureGenerationInfo> pair : getStructureGenerations(VanillaStructureGenerationInfo.class))
@@ -312,6 +314,148 @@ public class StructureRegistry
         );
     }
 
+    /**
+     * An immutable state of the registry. Whatever is derived from it (generation lists, structure selectors) is
+     * cached with it, so a new snapshot never sees stale caches.
+     */
+    public static class Snapshot
+    {
+        public final long version;
+
+        private final ImmutableBiMap<String, StructureInfo> structures;
+        private final ImmutableSet<String> generatingStructureKeys;
+        private final ImmutableSet<StructureInfo> generatingStructures;
+
+        private final Map<Class<? extends StructureGenerationInfo>, Collection<Pair<StructureInfo, ? extends StructureGenerationInfo>>> cachedGeneration = new ConcurrentHashMap<>();
+        private final Map<Pair<Integer, String>, StructureSelector> structureSelectors = new ConcurrentHashMap<>();
+        private final Map<String, Integer> structureCosts = new ConcurrentHashMap<>();
+
+        protected Snapshot(long version, ImmutableBiMap<String, StructureInfo> structures, ImmutableSet<String> generatingStructureKeys)
+        {
+            this.version = version;
+            this.structures = structures;
+            this.generatingStructureKeys = generatingStructureKeys;
+            this.generatingStructures = ImmutableSet.copyOf(Collections2.transform(generatingStructureKeys, structures::get));
+        }
+
+        public boolean hasStructure(String key)
+        {
+            return structures.containsKey(key);
+        }
+
+        public StructureInfo getStructure(String key)
+        {
+            return structures.get(key);
+        }
+
+        /**
+         * @return The estimated cost of the structure, worked out the first time it's asked for. Structures that never
+         * generate don't need their templates read for it.
+         */
+        public int getCost(String key)
+        {
+            StructureInfo info = structures.get(key);
+            return info != null ? structureCosts.computeIfAbsent(key, k -> StructureCosts.estimate(info)) : 0;
+        }
+
+        public String structureID(StructureInfo structureInfo)
+        {
+            return structures.inverse().get(structureInfo);
+        }
+
+        public Set<StructureInfo> getAllStructures()
+        {
+            return structures.values();
+        }
+
+        public Set<StructureInfo> getAllGeneratingStructures()
+        {
+            return generatingStructures;
+        }
+
+        public Set<String> getAllGeneratingStructureKeys()
+        {
+            return generatingStructureKeys;
+        }
+
+        public boolean isStructureGenerating(String key)
+        {
+            return generatingStructureKeys.contains(key);
+        }
+
+        public Map<String, StructureInfo> structureMap()
+        {
+            return structures;
+        }
+
+        public Set<String> allStructureIDs()
+        {
+            return structures.keySet();
+        }
+
+        public <T extends StructureGenerationInfo> Collection<Pair<StructureInfo, T>> getStructureGenerations(Class<T> clazz)
+        {
+            return (Collection<Pair<StructureInfo, T>>) ((Map) cachedGeneration).computeIfAbsent(clazz, c -> {
+                ImmutableList.Builder<Pair<StructureInfo, T>> pairs = ImmutableList.builder();
+                for (StructureInfo info : generatingStructures)
+                {
+                    List<T> generationInfos = info.generationInfos(clazz);
+                    for (T t : generationInfos)
+                        pairs.add(Pair.of(info, t));
+                }
+                return pairs.build();
+            });
+        }
+
+        public <T extends StructureGenerationInfo> Collection<Pair<StructureInfo, T>> getStructureGenerations(Class<T> clazz, final Predicate<Pair<StructureInfo, T>> predicate)
+        {
+            return Collections2.filter(getStructureGenerations(clazz), predicate::test);
+        }
+
+        public StructureSelector getStructureSelector(BiomeGenBase biome, WorldProvider provider)
+        {
+            Pair<Integer, String> pair = new ImmutablePair<>(provider.dimensionId, biome.biomeName);
+            StructureSelector structureSelector = structureSelectors.get(pair);
+
+            if (structureSelector == null || !structureSelector.isValid(biome, provider))
+            {
+                structureSelector = new StructureSelector(generatingStructures, biome, provider);
+                structureSelectors.put(pair, structureSelector);
+            }
+
+            return structureSelector;
+        }
+
+        public Collection<Pair<StructureInfo, StructureListGenerationInfo>> getStructuresInList(final String listID, final ForgeDirection front)
+        {
+            return getStructureGenerations(StructureListGenerationInfo.class, input -> listID.equals(input.getRight().listID)
+                    && (front == null || input.getLeft().isRotatable() || input.getRight().front == front));
+        }
+
+        public Collection<Pair<StructureInfo, MazeGenerationInfo>> getStructuresInMaze(final String mazeID)
+        {
+            return getStructureGenerations(MazeGenerationInfo.class, input -> {
+                MazeGenerationInfo info = input.getRight();
+                return mazeID.equals(info.mazeID) && info.mazeComponent.isValid();
+            });
+        }
+
+        private static boolean chunkContains(int chunkX, int chunkZ, int x, int z)
+        {
+            return (x >> 4) == chunkX && (z >> 4) == chunkZ;
+        }
+
+        public Collection<Pair<StructureInfo, StaticGenerationInfo>> getStaticStructuresAt(final int chunkX, final int chunkZ, final World world, final ChunkCoordinates spawnPos)
+        {
+            return getStructureGenerations(StaticGenerationInfo.class, input -> {
+                StaticGenerationInfo info = input.getRight();
+                return info.dimensionMatcher.apply(world.provider)
+                        && chunkContains(chunkX, chunkZ, info.getPositionX(spawnPos), info.getPositionZ(spawnPos)
+                );
+            });
+        }
+    }
+
     private static class StructureData
     {
         public boolean disabled;
@@ -7,8 +7,11 @@ package ivorius.reccomplex.structures;
 
 import ivorius.ivtoolkit.blocks.BlockCoord;
 import ivorius.ivtoolkit.math.AxisAlignedTransform2D;
+import ivorius.reccomplex.structures.generic.transformers.TransformerSeeds;
 import ivorius.reccomplex.utils.IBlockState;
 import ivorius.reccomplex.utils.BlockStates;
+import ivorius.reccomplex.worldgen.ChunkSectionWriter;
+import ivorius.reccomplex.worldgen.SurfaceHeightCache;
 import net.minecraft.util.MathHelper;
 import net.minecraft.world.World;
 import net.minecraft.world.gen.structure.StructureBoundingBox;
@@ -39,6 +42,11 @@ public class StructureSpawnContext
     public final boolean generateAsSource;
     public final boolean isFirstTime;
 
+    @Nullable
+    protected ChunkSectionWriter sectionWriter;
+    @Nullable
+    protected TransformerSeeds transformerSeeds;
+
     public StructureSpawnContext(@Nonnull World world, @Nonnull Random random, @Nonnull AxisAlignedTransform2D transform, @Nonnull StructureBoundingBox boundingBox, @Nullable StructureBoundingBox generationBB, int generationLayer, boolean generateAsSource, boolean isFirstTime)
     {
         this.world = world;
@@ -98,11 +106,48 @@ public class StructureSpawnContext
         return new BlockCoord(boundingBox.minX, boundingBox.minY, boundingBox.minZ);
     }
 
+    /**
+     * Makes {@link #setBlock} write directly into chunk sections until {@link #flushSectionWriter()} is called.
+     */
+    public void writeToSections()
+    {
+        if (sectionWriter == null)
+            sectionWriter = new ChunkSectionWriter(world);
+    }
+
+    public void flushSectionWriter()
+    {
+        if (sectionWriter != null)
+        {
+            sectionWriter.flush();
+            sectionWriter = null;
+        }
+    }
+
+    /**
+     * Lets transformers hand work outside {@link #generationBB} to the chunks it belongs to, see {@link TransformerSeeds}.
+     */
+    public void deferSeedsTo(@Nullable TransformerSeeds transformerSeeds)
+    {
+        this.transformerSeeds = transformerSeeds;
+    }
+
+    @Nullable
+    public TransformerSeeds getTransformerSeeds()
+    {
+        return transformerSeeds;
+    }
+
     public boolean setBlock(BlockCoord coord, IBlockState state)
     {
         if (includes(coord.x, coord.y, coord.z))
         {
-            world.setBlock(coord.x, coord.y, coord.z, state.getBlock(), BlockStates.getMetadata(state), 2);
+            SurfaceHeightCache.update(world, coord.x, coord.y, coord.z, state.getBlock());
+
+            if (sectionWriter != null)
+                sectionWriter.setBlock(coord.x, coord.y, coord.z, state.getBlock(), BlockStates.getMetadata(state));
+            else
+                world.setBlock(coord.x, coord.y, coord.z, state.getBlock(), BlockStates.getMetadata(state), 2);
             return true;
         }
 
@@ -113,7 +158,12 @@ public class StructureSpawnContext
     {
         if (includes(x, y, z))
         {
-            world.setBlock(x, y, z, state.getBlock(), BlockStates.getMetadata(state), 2);
+            SurfaceHeightCache.update(world, x, y, z, state.getBlock());
+
+            if (sectionWriter != null)
+                sectionWriter.setBlock(x, y, z, state.getBlock(), BlockStates.getMetadata(state));
+            else
+                world.setBlock(x, y, z, state.getBlock(), BlockStates.getMetadata(state), 2);
             return true;
         }
 
@@ -6,10 +6,11 @@
 package ivorius.reccomplex.structures.generic;
 
 import com.google.gson.*;
+import gnu.trove.map.TIntObjectMap;
 import ivorius.ivtoolkit.blocks.BlockCoord;
-import ivorius.ivtoolkit.blocks.IvBlockCollection;
 import ivorius.ivtoolkit.tools.IvWorldData;
 import ivorius.ivtoolkit.tools.NBTTagLists;
+import ivorius.reccomplex.RCConfig;
 import ivorius.reccomplex.RecurrentComplex;
 import ivorius.reccomplex.blocks.GeneratingTileEntity;
 import ivorius.reccomplex.blocks.RCBlocks;
@@ -25,7 +26,6 @@ import ivorius.reccomplex.structures.generic.transformers.*;
 import ivorius.reccomplex.utils.*;
 import ivorius.ivtoolkit.tools.Pairs;
 import ivorius.reccomplex.worldgen.inventory.InventoryGenerationHandler;
-import net.minecraft.block.material.Material;
 import net.minecraft.entity.Entity;
 import net.minecraft.init.Blocks;
 import net.minecraft.inventory.IInventory;
@@ -36,6 +36,7 @@ import net.minecraft.tileentity.TileEntity;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldServer;
 import net.minecraft.world.biome.BiomeGenBase;
+import net.minecraft.world.gen.structure.StructureBoundingBox;
 import net.minecraftforge.common.BiomeDictionary;
 import org.apache.commons.lang3.tuple.Pair;
 
@@ -59,6 +60,8 @@ public class GenericStructureInfo implements StructureInfo<GenericStructureInfo.
     public Metadata metadata = new Metadata();
     public JsonObject customData;
 
+    private volatile StructureTemplate template;
+
     public static GenericStructureInfo createDefaultStructure()
     {
         GenericStructureInfo genericStructureInfo = new GenericStructureInfo();
@@ -112,94 +115,80 @@ public class GenericStructureInfo implements StructureInfo<GenericStructureInfo.
     public void generate(final StructureSpawnContext context, InstanceData instanceData)
     {
         World world = context.world;
-        Random random = context.random;
-        IvWorldData worldData = constructWorldData(world);
+        StructureTemplate template = template();
 
         // The world initializes the block event array after it generates the world - in the constructor
         // This hackily sets the field to a temporary value. Yay.
         if (world instanceof WorldServer)
             RCAccessorWorldServer.ensureBlockEventArray((WorldServer) world); // Hax
 
-        IvBlockCollection blockCollection = worldData.blockCollection;
-        int[] areaSize = new int[]{blockCollection.width, blockCollection.height, blockCollection.length};
+        int[] areaSize = template.areaSize();
         BlockCoord origin = context.lowerCoord();
+        StructureTemplate.TransformMapping mapping = template.mapping(context.transform);
 
-        Map<BlockCoord, TileEntity> tileEntities = new HashMap<>();
-        for (TileEntity tileEntity : worldData.tileEntities)
-        {
-            BlockCoord key = new BlockCoord(tileEntity);
-            tileEntities.put(key, tileEntity);
-            IvWorldData.setTileEntityPosForGeneration(tileEntity, context.transform.apply(key, areaSize).add(origin));
-        }
+        TIntObjectMap<TileEntity> tileEntities = template.createGeneratingTileEntities(mapping, origin);
 
         List<Pair<Transformer, NBTStorable>> transformers = Pairs.of(this.transformers, instanceData.transformers);
 
-        if (!context.generateAsSource)
+        if (RCConfig.directBlockPlacement)
+            context.writeToSections();
+
+        try
         {
-            for (Pair<Transformer, NBTStorable> pair : transformers)
+            if (!context.generateAsSource)
             {
-                Transformer transformer = pair.getLeft();
-                NBTStorable transformerData = pair.getRight();
-                if (transformer.generatesInPhase(transformerData, Transformer.Phase.BEFORE))
-                    transformer.transform(transformerData, Transformer.Phase.BEFORE, context, worldData, transformers);
+                for (Pair<Transformer, NBTStorable> pair : transformers)
+                {
+                    Transformer transformer = pair.getLeft();
+                    NBTStorable transformerData = pair.getRight();
+                    if (transformer.generatesInPhase(transformerData, Transformer.Phase.BEFORE))
+                        transformer.transform(transformerData, Transformer.Phase.BEFORE, context, template, transformers);
+                }
             }
-        }
 
-        for (int pass = 0; pass < 2; pass++)
-        {
-            for (BlockCoord sourceCoord : blockCollection)
+            StructureBoundingBox sourceBB = template.sourceBounds(context.transform, origin, context.generationBB);
+            BitSet skipped = context.generateAsSource ? new BitSet() : template.skippedPalette(transformers);
+            for (int paletteIndex = 0; paletteIndex < template.paletteSize(); paletteIndex++)
             {
-                IBlockState state = BlockStates.at(blockCollection, sourceCoord);
-
-                BlockCoord worldPos = context.transform.apply(sourceCoord, areaSize).add(origin);
-                if (context.includes(worldPos) && RecurrentComplex.specialRegistry.isSafe(state.getBlock())) {
+                if (!RecurrentComplex.specialRegistry.isSafe(template.paletteState(paletteIndex).getBlock()))
+                    skipped.set(paletteIndex);
+            }
 
-                    TileEntity tileEntity = tileEntities.get(sourceCoord);
-                    if (pass == getPass(state) && (context.generateAsSource || !skips(transformers, state)))
-                    {
-                        if (context.generateAsSource || !(tileEntity instanceof GeneratingTileEntity) || ((GeneratingTileEntity) tileEntity).shouldPlaceInWorld(context, instanceData.tileEntities.get(sourceCoord)))
+            for (int pass = 0; pass < 2 && sourceBB != null; pass++)
+            {
+                for (int z = sourceBB.minZ; z <= sourceBB.maxZ; z++)
+                    for (int y = sourceBB.minY; y <= sourceBB.maxY; y++)
+                        for (int x = sourceBB.minX, index = template.index(x, y, z); x <= sourceBB.maxX; x++, index++)
                         {
-                            if (context.setBlock(worldPos, state) && world.getBlock(worldPos.x, worldPos.y, worldPos.z) == state.getBlock())
-                            {
-                                if (tileEntity != null && RecurrentComplex.specialRegistry.isSafe(tileEntity))
-                                {
-                                    world.setBlockMetadataWithNotify(worldPos.x, worldPos.y, worldPos.z, BlockStates.getMetadata(state), 2); // TODO Figure out why some blocks (chests, furnace) need this
-
-                                    world.setTileEntity(worldPos.x, worldPos.y, worldPos.z, tileEntity);
-                                    tileEntity.updateContainingBlockInfo();
-
-                                    if (!context.generateAsSource)
-                                    {
-                                        if (tileEntity instanceof IInventory)
-                                        {
-                                            IInventory inventory = (IInventory) tileEntity;
-                                            InventoryGenerationHandler.generateAllTags(inventory, RecurrentComplex.specialRegistry.itemHidingMode(), random);
-                                        }
-                                    }
-                                }
-                                context.transform.rotateBlock(world, worldPos, state.getBlock());
-                            }
+                            int paletteIndex = template.paletteIndex(index);
+                            if (skipped.get(paletteIndex) || template.palettePass(paletteIndex) != pass)
+                                continue;
+
+                            int worldX = origin.x + mapping.x(x, z), worldY = origin.y + y, worldZ = origin.z + mapping.z(x, z);
+                            TileEntity tileEntity = template.hasGeneratingTileEntity(index) ? tileEntities.get(index)
+                                    : template.hasTileEntity(index) ? template.createTileEntity(index, mapping, origin) : null;
+                            placeBlock(context, template, instanceData, index, template.paletteState(paletteIndex), tileEntity, worldX, worldY, worldZ);
                         }
+            }
 
-                        else
-                            context.setBlock(worldPos, BlockStates.defaultState(Blocks.air)); // Replace with air
-                    }
+            if (!context.generateAsSource)
+            {
+                for (Pair<Transformer, NBTStorable> pair : transformers)
+                {
+                    Transformer transformer = pair.getLeft();
+                    NBTStorable transformerData = pair.getRight();
+                    if (transformer.generatesInPhase(transformerData, Transformer.Phase.AFTER))
+                        transformer.transform(transformerData, Transformer.Phase.AFTER, context, template, transformers);
                 }
             }
         }
-
-        if (!context.generateAsSource)
+        finally
         {
-            for (Pair<Transformer, NBTStorable> pair : transformers)
-            {
-                Transformer transformer = pair.getLeft();
-                NBTStorable transformerData = pair.getRight();
-                if (transformer.generatesInPhase(transformerData, Transformer.Phase.AFTER))
-                    transformer.transform(transformerData, Transformer.Phase.AFTER, context, worldData, transformers);
-            }
+            // Whatever was written needs its light and clients updated, even if generating failed
+            context.flushSectionWriter();
         }
 
-        for (Entity entity : worldData.entities)
+        for (Entity entity : template.createEntities(world, mapping, origin, context.generationBB))
         {
             IvWorldData.transformEntityPosForGeneration(entity, context.transform, areaSize);
             IvWorldData.moveEntityForGeneration(entity, origin);
@@ -213,7 +202,11 @@ public class GenericStructureInfo implements StructureInfo<GenericStructureInfo.
 
         if (!context.generateAsSource && context.generationLayer < MAX_GENERATING_LAYERS)
         {
-            tileEntities.entrySet().stream().filter(entry -> entry.getValue() instanceof GeneratingTileEntity).forEach(entry -> ((GeneratingTileEntity) entry.getValue()).generate(context, instanceData.tileEntities.get(entry.getKey())));
+            tileEntities.forEachEntry((index, tileEntity) -> {
+                if (tileEntity instanceof GeneratingTileEntity)
+                    ((GeneratingTileEntity) tileEntity).generate(context, instanceData.tileEntities.get(template.coord(index)));
+                return true;
+            });
         }
         else
         {
@@ -221,6 +214,55 @@ public class GenericStructureInfo implements StructureInfo<GenericStructureInfo.
         }
     }
 
+    private void placeBlock(StructureSpawnContext context, StructureTemplate template, InstanceData instanceData, int index, IBlockState state, TileEntity tileEntity, int x, int y, int z)
+    {
+        World world = context.world;
+
+        if (context.generateAsSource || !(tileEntity instanceof GeneratingTileEntity) || ((GeneratingTileEntity) tileEntity).shouldPlaceInWorld(context, instanceData.tileEntities.get(template.coord(index))))
+        {
+            int paletteIndex = template.paletteIndex(index);
+            boolean bakesTransform = tileEntity == null && template.bakesTransform(paletteIndex);
+
+            IBlockState transformed = bakesTransform ? template.transformedState(paletteIndex, context.transform) : null;
+            if (transformed != null)
+            {
+                context.setBlock(x, y, z, transformed);
+                return;
+            }
+
+            if (context.setBlock(x, y, z, state) && world.getBlock(x, y, z) == state.getBlock())
+            {
+                if (tileEntity != null && RecurrentComplex.specialRegistry.isSafe(tileEntity))
+                {
+                    world.setBlockMetadataWithNotify(x, y, z, BlockStates.getMetadata(state), 2); // TODO Figure out why some blocks (chests, furnace) need this
+
+                    world.setTileEntity(x, y, z, tileEntity);
+                    tileEntity.updateContainingBlockInfo();
+
+                    if (!context.generateAsSource)
+                    {
+                        if (tileEntity instanceof IInventory)
+                        {
+                            IInventory inventory = (IInventory) tileEntity;
+                            InventoryGenerationHandler.generateAllTags(inventory, RecurrentComplex.specialRegistry.itemHidingMode(), context.random);
+                        }
+                    }
+                }
+                BlockCoord coord = new BlockCoord(x, y, z);
+                context.transform.rotateBlock(world, coord, state.getBlock());
+
+                if (bakesTransform)
+                {
+                    transformed = BlockStates.at(world, coord);
+                    if (transformed.getBlock() == state.getBlock())
+                        template.setTransformedState(paletteIndex, context.transform, transformed);
+                }
+            }
+        }
+        else
+            context.setBlock(x, y, z, BlockStates.defaultState(Blocks.air)); // Replace with air
+    }
+
     @Override
     public InstanceData prepareInstanceData(StructurePrepareContext context)
     {
@@ -228,18 +270,15 @@ public class GenericStructureInfo implements StructureInfo<GenericStructureInfo.
 
         if (!context.generateAsSource)
         {
-            IvWorldData worldData = constructWorldData(null);
-            IvBlockCollection blockCollection = worldData.blockCollection;
+            StructureTemplate template = template();
 
-            int[] areaSize = new int[]{blockCollection.width, blockCollection.height, blockCollection.length};
             BlockCoord origin = context.lowerCoord();
 
             instanceData.transformers.addAll(transformers.stream().map(transformer -> transformer.prepareInstanceData(context)).collect(Collectors.toList()));
 
-            worldData.tileEntities.stream().filter(tileEntity -> tileEntity instanceof GeneratingTileEntity).forEach(tileEntity -> {
-                BlockCoord key = new BlockCoord(tileEntity);
-                IvWorldData.setTileEntityPosForGeneration(tileEntity, context.transform.apply(key, areaSize).add(origin));
-                instanceData.tileEntities.put(key, (NBTStorable) ((GeneratingTileEntity) tileEntity).prepareInstanceData(context));
+            template.createGeneratingTileEntities(template.mapping(context.transform), origin).forEachEntry((index, tileEntity) -> {
+                instanceData.tileEntities.put(template.coord(index), (NBTStorable) ((GeneratingTileEntity) tileEntity).prepareInstanceData(context));
+                return true;
             });
         }
 
@@ -250,23 +289,32 @@ public class GenericStructureInfo implements StructureInfo<GenericStructureInfo.
     public InstanceData loadInstanceData(StructureLoadContext context, final NBTBase nbt)
     {
         InstanceData instanceData = new InstanceData();
-        instanceData.readFromNBT(context, nbt, transformers, constructWorldData(null));
+        instanceData.readFromNBT(context, nbt, transformers, template());
         return instanceData;
     }
 
-    private boolean skips(List<Pair<Transformer, NBTStorable>> transformers, final IBlockState state)
+    public IvWorldData constructWorldData(World world)
     {
-        for (Pair<Transformer, NBTStorable> pair : transformers) {
-            if (pair.getLeft().skipGeneration(pair.getRight(), state)) {
-                return true;
-            }
-        }
-        return false;
+        return new IvWorldData(worldDataCompound, world, RecurrentComplex.specialRegistry.itemHidingMode());
     }
 
-    public IvWorldData constructWorldData(World world)
+    /**
+     * Safe to call from structure preparation threads; the template is rebuilt at most once per world data compound.
+     */
+    public StructureTemplate template()
     {
-        return new IvWorldData(worldDataCompound, world, RecurrentComplex.specialRegistry.itemHidingMode());
+        NBTTagCompound worldDataCompound = this.worldDataCompound;
+        StructureTemplate template = this.template;
+        if (template == null || !template.isBuiltFrom(worldDataCompound))
+        {
+            synchronized (this)
+            {
+                template = this.template;
+                if (template == null || !template.isBuiltFrom(worldDataCompound))
+                    this.template = template = new StructureTemplate(worldDataCompound, RecurrentComplex.specialRegistry.itemHidingMode());
+            }
+        }
+        return template;
     }
 
     @Override
@@ -287,11 +335,6 @@ public class GenericStructureInfo implements StructureInfo<GenericStructureInfo.
         return null;
     }
 
-    private int getPass(IBlockState state)
-    {
-        return (state.getBlock().isNormalCube() || state.getBlock().getMaterial() == Material.air) ? 0 : 1;
-    }
-
     @Override
     public GenericStructureInfo copyAsGenericStructureInfo()
     {
@@ -425,9 +468,8 @@ public class GenericStructureInfo implements StructureInfo<GenericStructureInfo.
             return String.format("%d,%d,%d", coord.x, coord.y, coord.z);
         }
 
-        public void readFromNBT(StructureLoadContext context, NBTBase nbt, List<Transformer> transformers, IvWorldData worldData)
+        public void readFromNBT(StructureLoadContext context, NBTBase nbt, List<Transformer> transformers, StructureTemplate template)
         {
-            IvBlockCollection blockCollection = worldData.blockCollection;
             NBTTagCompound compound = nbt instanceof NBTTagCompound ? (NBTTagCompound) nbt : new NBTTagCompound();
 
             List<NBTTagCompound> transformerCompounds = NBTTagLists.compoundsFrom(compound, KEY_TRANSFORMERS);
@@ -437,14 +479,13 @@ public class GenericStructureInfo implements StructureInfo<GenericStructureInfo.
                 this.transformers.add(transformers.get(i).loadInstanceData(context, transformerCompound.getTag("data")));
             }
 
-            int[] areaSize = new int[]{blockCollection.width, blockCollection.height, blockCollection.length};
             BlockCoord origin = context.lowerCoord();
 
             NBTTagCompound tileEntityCompound = compound.getCompoundTag(InstanceData.KEY_TILE_ENTITIES);
-            worldData.tileEntities.stream().filter(tileEntity -> tileEntity instanceof GeneratingTileEntity).forEach(tileEntity -> {
-                BlockCoord key = new BlockCoord(tileEntity);
-                IvWorldData.setTileEntityPosForGeneration(tileEntity, context.transform.apply(key, areaSize).add(origin));
+            template.createGeneratingTileEntities(template.mapping(context.transform), origin).forEachEntry((index, tileEntity) -> {
+                BlockCoord key = template.coord(index);
                 tileEntities.put(key, (NBTStorable) ((GeneratingTileEntity) tileEntity).loadInstanceData(context, getTileEntityTag(tileEntityCompound, key)));
+                return true;
             });
         }
 
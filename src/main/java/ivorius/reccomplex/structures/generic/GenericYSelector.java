@@ -10,17 +10,25 @@ import com.google.gson.annotations.SerializedName;
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
 import ivorius.ivtoolkit.tools.IvGsonHelper;
+import ivorius.reccomplex.RCConfig;
 import ivorius.reccomplex.json.JsonUtils;
 import ivorius.reccomplex.structures.YSelector;
+import ivorius.reccomplex.worldgen.LoadedChunks;
+import ivorius.reccomplex.worldgen.SurfaceHeightCache;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockLiquid;
 import net.minecraft.block.material.Material;
 import net.minecraft.util.MathHelper;
+import net.minecraft.world.IBlockAccess;
 import net.minecraft.world.World;
 import net.minecraft.world.gen.structure.StructureBoundingBox;
 
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Created by lukas on 25.05.14.
@@ -29,6 +37,14 @@ public class GenericYSelector implements YSelector
 {
     public static final int MIN_DIST_TO_VOID = 3;
 
+    /**
+     * Below this many columns, handing the scan to other threads costs more than it saves.
+     */
+    public static final int MIN_PARALLEL_COLUMNS = 32 * 32;
+
+    private static ExecutorService executor;
+    private static int executorThreads;
+
     public enum SelectionMode
     {
         @SerializedName("bedrock")
@@ -80,12 +96,33 @@ public class GenericYSelector implements YSelector
                 return selectByConstant(world, boundingBox, world.getHeight() + yShift - 1);
             case SEALEVEL:
                 return selectByConstant(world, boundingBox, 63 + yShift);
-            case SURFACE:
-                return selectByFunction(world, boundingBox, surfaceSelector(world), averageReducer(yShift));
-            case UNDERWATER:
-                return selectByFunction(world, boundingBox, surfaceUnderwaterSelector(world), averageReducer(yShift));
-            case LOWEST_EDGE:
-                return selectByFunction(world, boundingBox, surfaceUnderwaterSelector(world), minReducer(yShift));
+        }
+
+        if (RCConfig.terrainReadThreads > 0 && boundingBox.getXSize() * boundingBox.getZSize() >= MIN_PARALLEL_COLUMNS)
+        {
+            LoadedChunks chunks = LoadedChunks.of(world, boundingBox);
+
+            switch (selectionMode)
+            {
+                case SURFACE:
+                    return selectByFunction(chunks, boundingBox, surfaceSelector(chunks), averageReducer(yShift));
+                case UNDERWATER:
+                    return selectByFunction(chunks, boundingBox, surfaceUnderwaterSelector(chunks), averageReducer(yShift));
+                case LOWEST_EDGE:
+                    return selectByFunction(chunks, boundingBox, surfaceUnderwaterSelector(chunks), minReducer(yShift));
+            }
+        }
+        else
+        {
+            switch (selectionMode)
+            {
+                case SURFACE:
+                    return selectByFunction(world, boundingBox, surfaceSelector(world), averageReducer(yShift));
+                case UNDERWATER:
+                    return selectByFunction(world, boundingBox, surfaceUnderwaterSelector(world), averageReducer(yShift));
+                case LOWEST_EDGE:
+                    return selectByFunction(world, boundingBox, surfaceUnderwaterSelector(world), minReducer(yShift));
+            }
         }
 
         throw new RuntimeException("Unrecognized selection mode " + selectionMode);
@@ -93,12 +130,24 @@ public class GenericYSelector implements YSelector
 
     protected static SingleYSelector surfaceSelector(final World world)
     {
-        return (x, z) -> surfaceHeight(world, x, z);
+        SurfaceHeightCache cache = SurfaceHeightCache.get(world);
+        return cache::surface;
     }
 
     protected static SingleYSelector surfaceUnderwaterSelector(final World world)
     {
-        return (x, z) -> surfaceHeightUnderwater(world, x, z);
+        SurfaceHeightCache cache = SurfaceHeightCache.get(world);
+        return cache::underwater;
+    }
+
+    protected static SingleYSelector surfaceSelector(final LoadedChunks chunks)
+    {
+        return (x, z) -> surfaceHeight(chunks, chunks.getTopSolidOrLiquidBlock(x, z), chunks.getHeight(), x, z);
+    }
+
+    protected static SingleYSelector surfaceUnderwaterSelector(final LoadedChunks chunks)
+    {
+        return (x, z) -> surfaceHeightUnderwater(chunks, chunks.getTopSolidOrLiquidBlock(x, z), x, z);
     }
 
     protected static IntListReducer minReducer(final int y)
@@ -117,10 +166,13 @@ public class GenericYSelector implements YSelector
         };
     }
 
-    protected static int surfaceHeightUnderwater(World world, int x, int z)
+    public static int surfaceHeightUnderwater(World world, int x, int z)
     {
-        int curYWater = world.getTopSolidOrLiquidBlock(x, z);
+        return surfaceHeightUnderwater(world, world.getTopSolidOrLiquidBlock(x, z), x, z);
+    }
 
+    protected static int surfaceHeightUnderwater(IBlockAccess world, int curYWater, int x, int z)
+    {
         while (curYWater > 0)
         {
             Block block = world.getBlock(x, curYWater, z);
@@ -135,10 +187,13 @@ public class GenericYSelector implements YSelector
         return curYWater;
     }
 
-    protected static int surfaceHeight(World world, int x, int z)
+    public static int surfaceHeight(World world, int x, int z)
     {
-        int curY = world.getTopSolidOrLiquidBlock(x, z);
+        return surfaceHeight(world, world.getTopSolidOrLiquidBlock(x, z), world.getHeight(), x, z);
+    }
 
+    protected static int surfaceHeight(IBlockAccess world, int curY, int worldHeight, int x, int z)
+    {
         while (curY > 0)
         {
             Block block = world.getBlock(x, curY, z);
@@ -149,7 +204,7 @@ public class GenericYSelector implements YSelector
 
             curY--;
         }
-        while (curY < world.getHeight())
+        while (curY < worldHeight)
         {
             if (!(world.getBlock(x, curY, z) instanceof BlockLiquid))
             {
@@ -189,6 +244,73 @@ public class GenericYSelector implements YSelector
         return list;
     }
 
+    protected static int selectByFunction(LoadedChunks chunks, StructureBoundingBox boundingBox, SingleYSelector selector, IntListReducer reducer)
+    {
+        TIntList intList = selectAll(chunks, boundingBox, selector);
+
+        if (intList.size() == 0)
+            return DONT_GENERATE;
+
+        return reducer.reduce(intList);
+    }
+
+    private static synchronized ExecutorService executor(int threads)
+    {
+        if (executor == null || executorThreads != threads)
+        {
+            if (executor != null)
+                executor.shutdown();
+
+            AtomicInteger threadIndex = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "RC Terrain Read #" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executorThreads = threads;
+        }
+
+        return executor;
+    }
+
+    /**
+     * Scans slices of x rows on {@link RCConfig#terrainReadThreads} worker threads while this thread waits; the result
+     * is in the same order as {@link #selectAll(World, StructureBoundingBox, SingleYSelector)}.
+     */
+    protected static TIntList selectAll(LoadedChunks chunks, StructureBoundingBox boundingBox, SingleYSelector selector)
+    {
+        int threads = RCConfig.terrainReadThreads;
+        int rows = boundingBox.getXSize(), rowsPerSlice = (rows + threads - 1) / threads;
+
+        List<Future<TIntList>> slices = new ArrayList<>(threads);
+        for (int minX = boundingBox.minX; minX <= boundingBox.maxX; minX += rowsPerSlice)
+        {
+            int sliceMinX = minX, sliceMaxX = Math.min(minX + rowsPerSlice - 1, boundingBox.maxX);
+            slices.add(executor(threads).submit(() -> {
+                TIntList list = new TIntArrayList();
+                for (int x = sliceMinX; x <= sliceMaxX; x++)
+                    for (int z = boundingBox.minZ; z <= boundingBox.maxZ; z++)
+                    {
+                        if (chunks.columnExists(x, z))
+                            list.add(selector.select(x, z));
+                    }
+                return list;
+            }));
+        }
+
+        TIntList list = new TIntArrayList();
+        try
+        {
+            for (Future<TIntList> slice : slices)
+                list.addAll(slice.get());
+        }
+        catch (InterruptedException | ExecutionException e)
+        {
+            throw new RuntimeException("Failed reading terrain", e);
+        }
+        return list;
+    }
+
     protected static int averageIgnoringErrors(int... values)
     {
         int average = 0;
@@ -0,0 +1,487 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.structures.generic;
+
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
+import ivorius.ivtoolkit.blocks.BlockCoord;
+import ivorius.ivtoolkit.blocks.IvBlockCollection;
+import ivorius.ivtoolkit.math.AxisAlignedTransform2D;
+import ivorius.ivtoolkit.tools.IvWorldData;
+import ivorius.ivtoolkit.tools.MCRegistry;
+import ivorius.reccomplex.blocks.GeneratingTileEntity;
+import ivorius.reccomplex.structures.generic.transformers.Transformer;
+import ivorius.reccomplex.utils.BlockStates;
+import ivorius.reccomplex.utils.BlockTransforms;
+import ivorius.reccomplex.utils.IBlockState;
+import ivorius.reccomplex.utils.NBTStorable;
+import net.minecraft.block.Block;
+import net.minecraft.block.material.Material;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityList;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.util.MathHelper;
+import net.minecraft.world.World;
+import net.minecraft.world.gen.structure.StructureBoundingBox;
+import net.minecraftforge.common.util.Constants;
+import org.apache.commons.lang3.tuple.Pair;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The decoded form of a structure's world data compound. Built once and shared by every generation of the structure;
+ * tile entities and entities are mutable, so they are kept as compounds, indexed by source position, and only
+ * instantiated when a generation actually places them.
+ * <br>
+ * Blocks are stored as indices into a palette of distinct states, in x, then y, then z order.
+ * <br>
+ * Apart from the caches, a template doesn't change after it is built, so it may be read from structure preparation threads.
+ */
+public class StructureTemplate
+{
+    @Nonnull
+    protected final NBTTagCompound source;
+    @Nonnull
+    protected final MCRegistry registry;
+
+    public final int width;
+    public final int height;
+    public final int length;
+
+    protected final IBlockState[] palette;
+    protected final Map<IBlockState, Integer> paletteIndices = new HashMap<>();
+    protected final byte[] palettePasses;
+    protected final BitSet bakedPalette;
+    protected final short[] blocks;
+
+    protected final TIntObjectMap<NBTTagCompound> tileEntityCompounds = new TIntObjectHashMap<>();
+    protected final TIntSet generatingTileEntities = new TIntHashSet();
+    protected final List<NBTTagCompound> entityCompounds;
+    protected final BlockCoord[] entityBlocks;
+
+    protected final AtomicReferenceArray<TransformMapping> mappings = new AtomicReferenceArray<>(8);
+    protected final IBlockState[][] transformedPalettes = new IBlockState[8][];
+
+    public StructureTemplate(@Nonnull NBTTagCompound source, @Nonnull MCRegistry registry)
+    {
+        this.source = source;
+        this.registry = registry;
+
+        NBTTagCompound blockCompound = new NBTTagCompound();
+        blockCompound.setTag("blockCollection", source.getCompoundTag("blockCollection"));
+        IvBlockCollection blockCollection = new IvWorldData(blockCompound, null, registry).blockCollection;
+
+        width = blockCollection.width;
+        height = blockCollection.height;
+        length = blockCollection.length;
+
+        List<IBlockState> palette = new ArrayList<>();
+        blocks = new short[width * height * length];
+
+        int index = 0;
+        for (int z = 0; z < length; z++)
+            for (int y = 0; y < height; y++)
+                for (int x = 0; x < width; x++)
+                {
+                    IBlockState state = BlockStates.at(blockCollection, new BlockCoord(x, y, z));
+                    Integer paletteIndex = paletteIndices.get(state);
+                    if (paletteIndex == null)
+                    {
+                        paletteIndices.put(state, paletteIndex = palette.size());
+                        palette.add(state);
+                    }
+                    blocks[index++] = (short) (int) paletteIndex;
+                }
+
+        this.palette = palette.toArray(new IBlockState[palette.size()]);
+
+        palettePasses = new byte[this.palette.length];
+        for (int i = 0; i < palettePasses.length; i++)
+            palettePasses[i] = (byte) getPass(this.palette[i]);
+
+        bakedPalette = new BitSet(this.palette.length);
+        for (int i = 0; i < this.palette.length; i++)
+        {
+            Block block = this.palette[i].getBlock();
+            if (!block.hasTileEntity(BlockStates.getMetadata(this.palette[i])) && BlockTransforms.isTransformContextFree(block))
+                bakedPalette.set(i);
+        }
+
+        for (NBTTagCompound compound : fixedCompounds(source, "tileEntities", registry))
+        {
+            int x = compound.getInteger("x"), y = compound.getInteger("y"), z = compound.getInteger("z");
+            if (contains(x, y, z))
+            {
+                tileEntityCompounds.put(index(x, y, z), compound);
+                if (registry.loadTileEntity(compound) instanceof GeneratingTileEntity)
+                    generatingTileEntities.add(index(x, y, z));
+            }
+        }
+
+        entityCompounds = fixedCompounds(source, "entities", registry);
+        entityBlocks = new BlockCoord[entityCompounds.size()];
+        for (int i = 0; i < entityBlocks.length; i++)
+        {
+            NBTTagList pos = entityCompounds.get(i).getTagList("Pos", Constants.NBT.TAG_DOUBLE);
+            entityBlocks[i] = new BlockCoord(MathHelper.floor_double(pos.func_150309_d(0)), MathHelper.floor_double(pos.func_150309_d(1)), MathHelper.floor_double(pos.func_150309_d(2)));
+        }
+    }
+
+    private static List<NBTTagCompound> fixedCompounds(NBTTagCompound source, String key, MCRegistry registry)
+    {
+        NBTTagList list = source.getTagList(key, Constants.NBT.TAG_COMPOUND);
+        List<NBTTagCompound> compounds = new ArrayList<>(list.tagCount());
+        for (int i = 0; i < list.tagCount(); i++)
+        {
+            NBTTagCompound compound = (NBTTagCompound) list.getCompoundTagAt(i).copy(); // ID fix tags are removed when applied
+            IvWorldData.recursivelyApplyIDFixTags(compound, registry);
+            compounds.add(compound);
+        }
+        return Collections.unmodifiableList(compounds);
+    }
+
+    public static int getPass(IBlockState state)
+    {
+        return (state.getBlock().isNormalCube() || state.getBlock().getMaterial() == Material.air) ? 0 : 1;
+    }
+
+    public boolean isBuiltFrom(NBTTagCompound compound)
+    {
+        return source == compound;
+    }
+
+    public int[] areaSize()
+    {
+        return new int[]{width, height, length};
+    }
+
+    public int volume()
+    {
+        return blocks.length;
+    }
+
+    public int index(int x, int y, int z)
+    {
+        return x + (y + z * height) * width;
+    }
+
+    public BlockCoord coord(int index)
+    {
+        return new BlockCoord(index % width, (index / width) % height, index / (width * height));
+    }
+
+    public boolean contains(int x, int y, int z)
+    {
+        return x >= 0 && y >= 0 && z >= 0 && x < width && y < height && z < length;
+    }
+
+    private static int transformKey(AxisAlignedTransform2D transform)
+    {
+        return (transform.getRotation() & 3) | (transform.isMirrorX() ? 4 : 0);
+    }
+
+    /**
+     * Safe to call from any thread. Mappings are immutable, so if two threads build the same one, either may be kept.
+     */
+    public TransformMapping mapping(AxisAlignedTransform2D transform)
+    {
+        int key = transformKey(transform);
+        TransformMapping mapping = mappings.get(key);
+        if (mapping == null)
+        {
+            mappings.compareAndSet(key, null, new TransformMapping(transform, width, height, length));
+            mapping = mappings.get(key);
+        }
+        return mapping;
+    }
+
+    public int paletteSize()
+    {
+        return palette.length;
+    }
+
+    public IBlockState paletteState(int paletteIndex)
+    {
+        return palette[paletteIndex];
+    }
+
+    /**
+     * Rotation and mirroring can only be asked of blocks placed in the world, so transformed states are learned from
+     * the first placement of each palette entry and reused after that. Only entries that end up the same wherever
+     * they are placed are learned, see {@link BlockTransforms#isTransformContextFree(Block)}; blocks with tile
+     * entities may keep their orientation in the tile entity, so they are never learned either.
+     */
+    public boolean bakesTransform(int paletteIndex)
+    {
+        return bakedPalette.get(paletteIndex);
+    }
+
+    /**
+     * @return The state the palette entry is placed as under the transform, or null if it isn't known (yet).
+     */
+    @Nullable
+    public IBlockState transformedState(int paletteIndex, AxisAlignedTransform2D transform)
+    {
+        int key = transformKey(transform);
+        if (key == 0)
+            return palette[paletteIndex];
+        if (!bakedPalette.get(paletteIndex))
+            return null;
+
+        // States are immutable, and every generation learns the same state, so a stale read only means placing it once more
+        IBlockState[] states = transformedPalettes[key];
+        return states != null ? states[paletteIndex] : null;
+    }
+
+    public synchronized void setTransformedState(int paletteIndex, AxisAlignedTransform2D transform, IBlockState state)
+    {
+        if (!bakedPalette.get(paletteIndex))
+            return;
+
+        int key = transformKey(transform);
+        IBlockState[] states = transformedPalettes[key];
+        if (states == null)
+            transformedPalettes[key] = states = new IBlockState[palette.length];
+        states[paletteIndex] = state;
+    }
+
+    public int paletteIndexOf(IBlockState state)
+    {
+        Integer paletteIndex = paletteIndices.get(state);
+        return paletteIndex != null ? paletteIndex : -1;
+    }
+
+    public int palettePass(int paletteIndex)
+    {
+        return palettePasses[paletteIndex];
+    }
+
+    /**
+     * Evaluates {@link Transformer#skipGeneration} once per palette entry rather than once per block.
+     *
+     * @return The palette indices skipped by any of the transformers.
+     */
+    public BitSet skippedPalette(List<Pair<Transformer, NBTStorable>> transformers)
+    {
+        BitSet skipped = new BitSet(palette.length);
+        for (int i = 0; i < palette.length; i++)
+        {
+            for (Pair<Transformer, NBTStorable> pair : transformers)
+            {
+                if (pair.getLeft().skipGeneration(pair.getRight(), palette[i]))
+                {
+                    skipped.set(i);
+                    break;
+                }
+            }
+        }
+        return skipped;
+    }
+
+    public int paletteIndex(int index)
+    {
+        return blocks[index] & 0xffff;
+    }
+
+    public IBlockState state(int index)
+    {
+        return palette[blocks[index] & 0xffff];
+    }
+
+    public IBlockState state(int x, int y, int z)
+    {
+        return state(index(x, y, z));
+    }
+
+    /**
+     * Finds the source blocks that are placed inside the given world area.
+     *
+     * @param area The world area, or null for the whole structure.
+     * @return The inclusive source bounds, or null if no block falls into the area.
+     */
+    @Nullable
+    public StructureBoundingBox sourceBounds(AxisAlignedTransform2D transform, BlockCoord origin, @Nullable StructureBoundingBox area)
+    {
+        return mapping(transform).sourceBounds(origin, area);
+    }
+
+    public int tileEntityCount()
+    {
+        return tileEntityCompounds.size();
+    }
+
+    public boolean hasTileEntity(int index)
+    {
+        return tileEntityCompounds.containsKey(index);
+    }
+
+    public boolean hasGeneratingTileEntity(int index)
+    {
+        return generatingTileEntities.contains(index);
+    }
+
+    /**
+     * Creates the tile entity at the source index, already moved to where it is placed in the world.
+     */
+    @Nullable
+    public TileEntity createTileEntity(int index, TransformMapping mapping, BlockCoord origin)
+    {
+        NBTTagCompound compound = tileEntityCompounds.get(index);
+        TileEntity tileEntity = compound != null ? registry.loadTileEntity(compound) : null;
+        if (tileEntity != null)
+            IvWorldData.setTileEntityPosForGeneration(tileEntity, mapping.apply(coord(index), origin));
+        return tileEntity;
+    }
+
+    /**
+     * Generating tile entities may spawn outside of their own block, so they are always created, wherever they are.
+     *
+     * @return The generating tile entities by source index, already moved to where they are placed in the world.
+     */
+    public TIntObjectMap<TileEntity> createGeneratingTileEntities(TransformMapping mapping, BlockCoord origin)
+    {
+        TIntObjectMap<TileEntity> tileEntities = new TIntObjectHashMap<>(generatingTileEntities.size());
+        generatingTileEntities.forEach(index -> {
+            TileEntity tileEntity = createTileEntity(index, mapping, origin);
+            if (tileEntity != null)
+                tileEntities.put(index, tileEntity);
+            return true;
+        });
+        return tileEntities;
+    }
+
+    /**
+     * Creates the entities that may end up inside the area. Entities aren't confined to their block by the
+     * transform, so the caller still has to check their final position.
+     *
+     * @param area The world area, or null for the whole structure.
+     */
+    public List<Entity> createEntities(World world, TransformMapping mapping, BlockCoord origin, @Nullable StructureBoundingBox area)
+    {
+        List<Entity> entities = new ArrayList<>();
+        for (int i = 0; i < entityCompounds.size(); i++)
+        {
+            BlockCoord block = entityBlocks[i];
+            if (area != null && contains(block.x, block.y, block.z))
+            {
+                BlockCoord worldBlock = mapping.apply(block, origin);
+                if (worldBlock.x < area.minX - 1 || worldBlock.y < area.minY - 1 || worldBlock.z < area.minZ - 1
+                        || worldBlock.x > area.maxX + 1 || worldBlock.y > area.maxY + 1 || worldBlock.z > area.maxZ + 1)
+                    continue;
+            }
+
+            Entity entity = EntityList.createEntityFromNBT(entityCompounds.get(i), world);
+            if (entity != null)
+                entities.add(entity);
+        }
+        return entities;
+    }
+
+    /**
+     * Where each source column ends up under one transform, relative to the lower corner of the transformed area.
+     * Axis aligned transforms never touch y, so one entry per column is enough.
+     */
+    public static class TransformMapping
+    {
+        protected final int width;
+        protected final int height;
+        public final int transformedWidth;
+        public final int transformedLength;
+
+        protected final int[] x;
+        protected final int[] z;
+
+        protected final int[] sourceX;
+        protected final int[] sourceZ;
+
+        public TransformMapping(AxisAlignedTransform2D transform, int width, int height, int length)
+        {
+            boolean swapsAxes = (transform.getRotation() & 1) == 1;
+
+            this.width = width;
+            this.height = height;
+            transformedWidth = swapsAxes ? length : width;
+            transformedLength = swapsAxes ? width : length;
+
+            x = new int[width * length];
+            z = new int[width * length];
+            sourceX = new int[width * length];
+            sourceZ = new int[width * length];
+
+            int[] size = new int[]{width, height, length};
+            for (int sourceZ = 0; sourceZ < length; sourceZ++)
+                for (int sourceX = 0; sourceX < width; sourceX++)
+                {
+                    BlockCoord transformed = transform.apply(new BlockCoord(sourceX, 0, sourceZ), size);
+                    x[sourceX + sourceZ * width] = transformed.x;
+                    z[sourceX + sourceZ * width] = transformed.z;
+
+                    this.sourceX[transformed.x + transformed.z * transformedWidth] = sourceX;
+                    this.sourceZ[transformed.x + transformed.z * transformedWidth] = sourceZ;
+                }
+        }
+
+        public int x(int sourceX, int sourceZ)
+        {
+            return x[sourceX + sourceZ * width];
+        }
+
+        public int z(int sourceX, int sourceZ)
+        {
+            return z[sourceX + sourceZ * width];
+        }
+
+        public int sourceX(int x, int z)
+        {
+            return sourceX[x + z * transformedWidth];
+        }
+
+        public int sourceZ(int x, int z)
+        {
+            return sourceZ[x + z * transformedWidth];
+        }
+
+        public BlockCoord apply(BlockCoord source, BlockCoord origin)
+        {
+            return new BlockCoord(origin.x + x(source.x, source.z), origin.y + source.y, origin.z + z(source.x, source.z));
+        }
+
+        /**
+         * @return The source area whose blocks end up inside area when generated at origin, or null if there are none.
+         */
+        @Nullable
+        public StructureBoundingBox sourceBounds(BlockCoord origin, @Nullable StructureBoundingBox area)
+        {
+            int minX = 0, minY = 0, minZ = 0;
+            int maxX = transformedWidth - 1, maxY = height - 1, maxZ = transformedLength - 1;
+
+            if (area != null)
+            {
+                minX = Math.max(minX, area.minX - origin.x);
+                minY = Math.max(minY, area.minY - origin.y);
+                minZ = Math.max(minZ, area.minZ - origin.z);
+                maxX = Math.min(maxX, area.maxX - origin.x);
+                maxY = Math.min(maxY, area.maxY - origin.y);
+                maxZ = Math.min(maxZ, area.maxZ - origin.z);
+            }
+
+            if (minX > maxX || minY > maxY || minZ > maxZ)
+                return null;
+
+            // Opposite corners stay opposite under axis aligned transforms
+            int x1 = sourceX(minX, minZ), z1 = sourceZ(minX, minZ);
+            int x2 = sourceX(maxX, maxZ), z2 = sourceZ(maxX, maxZ);
+            return new StructureBoundingBox(Math.min(x1, x2), minY, Math.min(z1, z2), Math.max(x1, x2), maxY, Math.max(z1, z2));
+        }
+    }
+}
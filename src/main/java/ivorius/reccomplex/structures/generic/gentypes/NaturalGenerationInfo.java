@@ -190,7 +190,12 @@ public class NaturalGenerationInfo extends StructureGenerationInfo
 
         public boolean areResolved(World world, String structureID)
         {
-            return StructureGenerationData.get(world).getEntriesByID(structureID).size() < maxCount;
+            return areResolved(StructureGenerationData.get(world).getInstanceCount(structureID));
+        }
+
+        public boolean areResolved(int generatedCount)
+        {
+            return generatedCount < maxCount;
         }
 
         public enum Context
@@ -56,17 +56,17 @@ public class WorldGenMaze
         return true;
     }
 
-    public static List<PlacedStructure> convertToPlacedStructures(final Random random, final BlockCoord coord, final BlockCoord shift, List<ShiftedMazeComponent<MazeComponentStructure<Connector>, Connector>> placedComponents, final int[] roomSize, final AxisAlignedTransform2D mazeTransform)
+    public static List<PlacedStructure> convertToPlacedStructures(StructureRegistry.Snapshot registry, final Random random, final BlockCoord coord, final BlockCoord shift, List<ShiftedMazeComponent<MazeComponentStructure<Connector>, Connector>> placedComponents, final int[] roomSize, final AxisAlignedTransform2D mazeTransform)
     {
         return Lists.newArrayList(placedComponents.stream().map(placedComponent -> {
             MazeComponentStructure<Connector> componentInfo = placedComponent.getComponent();
-            StructureInfo structureInfo = StructureRegistry.INSTANCE.getStructure(componentInfo.structureID);
+            StructureInfo structureInfo = registry.getStructure(componentInfo.structureID);
 
             if (structureInfo != null)
             {
                 AxisAlignedTransform2D componentTransform = componentInfo.transform.rotateClockwise(mazeTransform.getRotation());
                 StructureBoundingBox compBoundingBox = getBoundingBox(coord, shift, roomSize, placedComponent, structureInfo, componentTransform, mazeTransform);
-                NBTStorable instanceData = structureInfo.prepareInstanceData(new StructurePrepareContext(random, componentTransform, compBoundingBox, false));
+                NBTStorable instanceData = structureInfo.prepareInstanceData(new StructurePrepareContext(random, componentTransform, compBoundingBox, false, registry));
 
                 return new PlacedStructure(componentInfo.structureID, componentTransform, new BlockCoord(compBoundingBox.minX, compBoundingBox.minY, compBoundingBox.minZ), instanceData);
             }
@@ -98,7 +98,7 @@ public class WorldGenMaze
         return StructureInfos.structureBoundingBox(lowerCoord, structureBB);
     }
 
-    public static List<MazeComponentStructure<Connector>> transformedComponents(Collection<Pair<StructureInfo, MazeGenerationInfo>> componentStructures, ConnectorFactory factory, AxisAlignedTransform2D transform, Collection<Connector> blockedConnections)
+    public static List<MazeComponentStructure<Connector>> transformedComponents(StructureRegistry.Snapshot registry, Collection<Pair<StructureInfo, MazeGenerationInfo>> componentStructures, ConnectorFactory factory, AxisAlignedTransform2D transform, Collection<Connector> blockedConnections)
     {
         List<MazeComponentStructure<Connector>> transformedComponents = new ArrayList<>();
         for (Pair<StructureInfo, MazeGenerationInfo> pair : componentStructures)
@@ -117,10 +117,10 @@ public class WorldGenMaze
             {
                 if (info.isRotatable() || transform.apply(rotations) == 0)
                 {
-                    transformedComponents.add(transformedComponent(info, comp, AxisAlignedTransform2D.from(rotations, false), compSize, splitCompWeight, factory, blockedConnections));
+                    transformedComponents.add(transformedComponent(registry, info, comp, AxisAlignedTransform2D.from(rotations, false), compSize, splitCompWeight, factory, blockedConnections));
 
                     if (info.isMirrorable())
-                        transformedComponents.add(transformedComponent(info, comp, AxisAlignedTransform2D.from(rotations, true), compSize, splitCompWeight, factory, blockedConnections));
+                        transformedComponents.add(transformedComponent(registry, info, comp, AxisAlignedTransform2D.from(rotations, true), compSize, splitCompWeight, factory, blockedConnections));
                 }
             }
         }
@@ -128,7 +128,7 @@ public class WorldGenMaze
         return transformedComponents;
     }
 
-    public static MazeComponentStructure<Connector> transformedComponent(StructureInfo info, SavedMazeComponent comp, final AxisAlignedTransform2D transform, final int[] size, double weight, ConnectorFactory factory, Collection<Connector> blockedConnections)
+    public static MazeComponentStructure<Connector> transformedComponent(StructureRegistry.Snapshot registry, StructureInfo info, SavedMazeComponent comp, final AxisAlignedTransform2D transform, final int[] size, double weight, ConnectorFactory factory, Collection<Connector> blockedConnections)
     {
         Set<MazeRoom> transformedRooms = comp.getRooms().stream().map(input -> MazeRooms.rotated(input, transform, size)).collect(Collectors.toSet());
 
@@ -138,7 +138,7 @@ public class WorldGenMaze
 
         ImmutableMultimap<MazePassage, MazePassage> reachability = comp.reachability.build(transform, size, SavedMazeReachability.notBlocked(blockedConnections, transformedExits), transformedExits.keySet());
 
-        return new MazeComponentStructure<>(weight, StructureRegistry.INSTANCE.structureID(info), transform, ImmutableSet.copyOf(transformedRooms), ImmutableMap.copyOf(transformedExits), reachability);
+        return new MazeComponentStructure<>(weight, registry.structureID(info), transform, ImmutableSet.copyOf(transformedRooms), ImmutableMap.copyOf(transformedExits), reachability);
     }
 
     public static <C> SetMazeComponent<C> createCompleteComponent(Set<MazeRoom> rooms, Map<MazePassage, C> exits, C wallConnector)
@@ -5,13 +5,13 @@
 
 package ivorius.reccomplex.structures.generic.transformers;
 
-import ivorius.ivtoolkit.tools.IvWorldData;
 import ivorius.reccomplex.gui.table.TableDataSource;
 import ivorius.reccomplex.gui.table.TableDelegate;
 import ivorius.reccomplex.gui.table.TableNavigator;
 import ivorius.reccomplex.structures.StructureLoadContext;
 import ivorius.reccomplex.structures.StructurePrepareContext;
 import ivorius.reccomplex.structures.StructureSpawnContext;
+import ivorius.reccomplex.structures.generic.StructureTemplate;
 import ivorius.reccomplex.utils.IBlockState;
 import ivorius.reccomplex.utils.NBTStorable;
 import net.minecraft.nbt.NBTBase;
@@ -34,7 +34,7 @@ public interface Transformer<S extends NBTStorable>
 
     boolean skipGeneration(S instanceData, IBlockState state);
 
-    void transform(S instanceData, Phase phase, StructureSpawnContext context, IvWorldData worldData, List<Pair<Transformer, NBTStorable>> transformers);
+    void transform(S instanceData, Phase phase, StructureSpawnContext context, StructureTemplate template, List<Pair<Transformer, NBTStorable>> transformers);
 
     boolean generatesInPhase(S instanceData, Phase phase);
 
@@ -9,6 +9,7 @@ import com.google.gson.*;
 import ivorius.ivtoolkit.blocks.BlockCoord;
 import ivorius.ivtoolkit.math.IvVecMathHelper;
 import ivorius.ivtoolkit.tools.MCRegistry;
+import ivorius.reccomplex.RCConfig;
 import ivorius.reccomplex.RecurrentComplex;
 import ivorius.reccomplex.blocks.RCBlocks;
 import ivorius.reccomplex.gui.editstructure.transformers.TableDataSourceBTNatural;
@@ -16,6 +17,7 @@ import ivorius.reccomplex.gui.table.TableDataSource;
 import ivorius.reccomplex.gui.table.TableDelegate;
 import ivorius.reccomplex.gui.table.TableNavigator;
 import ivorius.reccomplex.json.JsonUtils;
+import ivorius.reccomplex.structures.StructureCosts;
 import ivorius.reccomplex.structures.StructureLoadContext;
 import ivorius.reccomplex.structures.StructurePrepareContext;
 import ivorius.reccomplex.structures.StructureSpawnContext;
@@ -23,16 +25,17 @@ import ivorius.reccomplex.structures.generic.matchers.BlockMatcher;
 import ivorius.reccomplex.utils.IBlockState;
 import ivorius.reccomplex.utils.BlockStates;
 import ivorius.reccomplex.utils.NBTNone;
+import ivorius.reccomplex.worldgen.SurfaceHeightCache;
 import net.minecraft.block.Block;
 import net.minecraft.init.Blocks;
 import net.minecraft.nbt.NBTBase;
+import net.minecraft.util.MathHelper;
 import net.minecraft.world.World;
 import net.minecraft.world.biome.BiomeGenBase;
 
+import javax.annotation.Nullable;
 import java.lang.reflect.Type;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.util.*;
 
 /**
  * Created by lukas on 25.05.14.
@@ -65,87 +68,131 @@ public class TransformerNatural extends TransformerSingleBlock<NBTNone>
         return sourceMatcher.apply(state);
     }
 
+    @Override
+    public int reach(NBTNone instanceData)
+    {
+        return expansionReach();
+    }
+
+    @Override
+    public int estimateCost(IBlockState state)
+    {
+        int reach = expansionReach();
+        return sourceMatcher.apply(state) ? reach * reach * StructureCosts.BLOCK_COST : 0;
+    }
+
+    protected int expansionReach()
+    {
+        return MathHelper.ceiling_double_int(Math.sqrt(naturalExpansionDistance * naturalExpansionDistance + naturalExpansionRandomization * naturalExpansionRandomization));
+    }
+
     @Override
     public void transformBlock(NBTNone instanceData, Phase phase, StructureSpawnContext context, BlockCoord coord, IBlockState sourceState)
     {
-        // TODO Fix for partial generation
+        if (phase == Phase.BEFORE)
+            startSeed(instanceData, context, coord, null);
+        else
+        {
+            World world = context.world;
+
+            BiomeGenBase biome = world.getBiomeGenForCoords(coord.x, coord.z);
+            Block topBlock = biome.topBlock != null ? biome.topBlock : Blocks.air;
+            Block fillerBlock = biome.fillerBlock != null ? biome.fillerBlock : Blocks.air;
+            Block mainBlock = mainBlock(world);
+
+            // Get the top blocks right (grass rather than dirt)
+            Block setBlock = hasBlockAbove(world, coord.x, coord.y, coord.z, mainBlock) ? mainBlock : (isTopBlock(world, coord.x, coord.y, coord.z) ? topBlock : fillerBlock);
+            context.setBlock(coord.x, coord.y, coord.z, BlockStates.defaultState(setBlock));
+        }
+    }
+
+    @Override
+    public void transformSeed(NBTNone instanceData, StructureSpawnContext context, BlockCoord origin, int x, int y, int z, @Nullable TransformerSeeds.Channel channel)
+    {
         World world = context.world;
         Random random = context.random;
 
-        BiomeGenBase biome = world.getBiomeGenForCoords(coord.x, coord.z);
+        BiomeGenBase biome = world.getBiomeGenForCoords(origin.x, origin.z);
         Block topBlock = biome.topBlock != null ? biome.topBlock : Blocks.air;
         Block fillerBlock = biome.fillerBlock != null ? biome.fillerBlock : Blocks.air;
-        Block mainBlock = world.provider.dimensionId == -1 ? Blocks.netherrack : (world.provider.dimensionId == 1 ? Blocks.end_stone : Blocks.stone);
+        Block mainBlock = mainBlock(world);
 
-        boolean useStoneBlock = hasBlockAbove(world, coord.x, coord.y, coord.z, mainBlock);
+        boolean useStoneBlock = hasBlockAbove(world, origin.x, origin.y, origin.z, mainBlock);
 
-        if (phase == Phase.BEFORE)
+        // Keeps the original fill order: one layer after the other, top to bottom, where a column is visited as
+        // often as it was added. Only the positions handed to the channel are left out.
+        int currentY = y;
+        Deque<int[]> currentList = new ArrayDeque<>();
+        Deque<int[]> nextList = new ArrayDeque<>();
+        nextList.add(new int[]{x, z});
+
+        while (nextList.size() > 0 && currentY > 1)
         {
-            int currentY = coord.y;
-            List<int[]> currentList = new ArrayList<>();
-            List<int[]> nextList = new ArrayList<>();
-            nextList.add(new int[]{coord.x, coord.z});
+            Deque<int[]> cachedList = currentList;
+            currentList = nextList;
+            nextList = cachedList;
 
-            while (nextList.size() > 0 && currentY > 1)
+            int[] currentPos;
+            while ((currentPos = currentList.poll()) != null)
             {
-                List<int[]> cachedList = currentList;
-                currentList = nextList;
-                nextList = cachedList;
+                int currentX = currentPos[0];
+                int currentZ = currentPos[1];
 
-                while (currentList.size() > 0)
+                if (channel != null && !context.includes(currentX, currentY, currentZ))
                 {
-                    int[] currentPos = currentList.remove(0);
-                    int currentX = currentPos[0];
-                    int currentZ = currentPos[1];
-                    Block curBlock = world.getBlock(currentX, currentY, currentZ);
+                    channel.defer(origin, currentX, currentY, currentZ);
+                    continue;
+                }
 
-                    boolean replaceable = currentY == coord.y || curBlock.isReplaceable(world, currentX, currentY, currentZ);
-                    if (replaceable)
-                    {
-                        Block setBlock = useStoneBlock ? mainBlock : (isTopBlock(world, currentX, currentY, currentZ) ? topBlock : fillerBlock);
-                        context.setBlock(currentX, currentY, currentZ, BlockStates.defaultState(setBlock));
-                    }
+                // Reading a chunk that doesn't exist would generate it
+                if (RCConfig.strictChunkGeneration && !world.blockExists(currentX, currentY, currentZ))
+                    continue;
+
+                Block curBlock = world.getBlock(currentX, currentY, currentZ);
+
+                boolean replaceable = currentY == origin.y || curBlock.isReplaceable(world, currentX, currentY, currentZ);
+                if (replaceable)
+                {
+                    Block setBlock = useStoneBlock ? mainBlock : (isTopBlock(world, currentX, currentY, currentZ) ? topBlock : fillerBlock);
+                    context.setBlock(currentX, currentY, currentZ, BlockStates.defaultState(setBlock));
+                }
+
+                // Uncommenting makes performance shit
+                if (replaceable/* || curBlock == topBlock || curBlock == fillerBlock || curBlock == mainBlock*/)
+                {
+                    double yForDistance = origin.y * 0.3 + currentY * 0.7;
+                    double distToOrigSQ = IvVecMathHelper.distanceSQ(new double[]{origin.x, origin.y, origin.z}, new double[]{currentX, yForDistance, currentZ});
+                    double add = (random.nextDouble() - random.nextDouble()) * naturalExpansionRandomization;
+                    distToOrigSQ += add < 0 ? -(add * add) : (add * add);
 
-                    // Uncommenting makes performance shit
-                    if (replaceable/* || curBlock == topBlock || curBlock == fillerBlock || curBlock == mainBlock*/)
+                    if (distToOrigSQ < naturalExpansionDistance * naturalExpansionDistance)
                     {
-                        double yForDistance = coord.y * 0.3 + currentY * 0.7;
-                        double distToOrigSQ = IvVecMathHelper.distanceSQ(new double[]{coord.x, coord.y, coord.z}, new double[]{currentX, yForDistance, currentZ});
-                        double add = (random.nextDouble() - random.nextDouble()) * naturalExpansionRandomization;
-                        distToOrigSQ += add < 0 ? -(add * add) : (add * add);
-
-                        if (distToOrigSQ < naturalExpansionDistance * naturalExpansionDistance)
-                        {
-                            addIfNew(nextList, currentX, currentZ);
-                            addIfNew(nextList, currentX - 1, currentZ);
-                            addIfNew(nextList, currentX + 1, currentZ);
-                            addIfNew(nextList, currentX, currentZ - 1);
-                            addIfNew(nextList, currentX, currentZ + 1);
-                        }
+                        nextList.add(new int[]{currentX, currentZ});
+                        nextList.add(new int[]{currentX - 1, currentZ});
+                        nextList.add(new int[]{currentX + 1, currentZ});
+                        nextList.add(new int[]{currentX, currentZ - 1});
+                        nextList.add(new int[]{currentX, currentZ + 1});
                     }
                 }
-
-                currentY--;
             }
-        }
-        else
-        {
-            // Get the top blocks right (grass rather than dirt)
-            Block setBlock = useStoneBlock ? mainBlock : (isTopBlock(world, coord.x, coord.y, coord.z) ? topBlock : fillerBlock);
-            context.setBlock(coord.x, coord.y, coord.z, BlockStates.defaultState(setBlock));
+
+            currentY--;
         }
     }
 
-    private void addIfNew(List<int[]> list, int... object)
+    private static Block mainBlock(World world)
     {
-        if (!list.contains(object))
-        {
-            list.add(object);
-        }
+        return world.provider.dimensionId == -1 ? Blocks.netherrack : (world.provider.dimensionId == 1 ? Blocks.end_stone : Blocks.stone);
     }
 
     private boolean hasBlockAbove(World world, int x, int y, int z, Block blockType)
     {
+        int highest = SurfaceHeightCache.get(world).highest(x, z, blockType);
+        if (highest < y)
+            return false;
+        if (highest < y + 60)
+            return true;
+
         int origY = y;
         for (; y < world.getHeight() && y < origY + 60; y++)
         {
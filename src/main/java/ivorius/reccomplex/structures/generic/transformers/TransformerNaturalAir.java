@@ -9,6 +9,7 @@ import com.google.gson.*;
 import ivorius.ivtoolkit.blocks.BlockCoord;
 import ivorius.ivtoolkit.math.IvVecMathHelper;
 import ivorius.ivtoolkit.tools.MCRegistry;
+import ivorius.reccomplex.RCConfig;
 import ivorius.reccomplex.RecurrentComplex;
 import ivorius.reccomplex.blocks.RCBlocks;
 import ivorius.reccomplex.gui.editstructure.transformers.TableDataSourceBTNaturalAir;
@@ -16,6 +17,7 @@ import ivorius.reccomplex.gui.table.TableDataSource;
 import ivorius.reccomplex.gui.table.TableDelegate;
 import ivorius.reccomplex.gui.table.TableNavigator;
 import ivorius.reccomplex.json.JsonUtils;
+import ivorius.reccomplex.structures.StructureCosts;
 import ivorius.reccomplex.structures.StructureLoadContext;
 import ivorius.reccomplex.structures.StructurePrepareContext;
 import ivorius.reccomplex.structures.StructureSpawnContext;
@@ -23,19 +25,19 @@ import ivorius.reccomplex.structures.generic.matchers.BlockMatcher;
 import ivorius.reccomplex.utils.IBlockState;
 import ivorius.reccomplex.utils.BlockStates;
 import ivorius.reccomplex.utils.NBTNone;
+import ivorius.reccomplex.worldgen.SurfaceHeightCache;
 import net.minecraft.block.Block;
 import net.minecraft.block.material.Material;
 import net.minecraft.init.Blocks;
 import net.minecraft.nbt.NBTBase;
 import net.minecraft.util.ChunkCoordinates;
+import net.minecraft.util.MathHelper;
 import net.minecraft.world.World;
 import net.minecraft.world.biome.BiomeGenBase;
 
+import javax.annotation.Nullable;
 import java.lang.reflect.Type;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Random;
+import java.util.*;
 
 /**
  * Created by lukas on 25.05.14.
@@ -68,76 +70,110 @@ public class TransformerNaturalAir extends TransformerSingleBlock<NBTNone>
         return sourceMatcher.apply(state);
     }
 
+    @Override
+    public int reach(NBTNone instanceData)
+    {
+        return expansionReach();
+    }
+
+    @Override
+    public int estimateCost(IBlockState state)
+    {
+        int reach = expansionReach();
+        return sourceMatcher.apply(state) ? reach * reach * StructureCosts.BLOCK_COST : 0;
+    }
+
+    protected int expansionReach()
+    {
+        return MathHelper.ceiling_double_int(Math.sqrt(naturalExpansionDistance * naturalExpansionDistance + naturalExpansionRandomization * naturalExpansionRandomization));
+    }
+
     @Override
     public void transformBlock(NBTNone instanceData, Phase phase, StructureSpawnContext context, BlockCoord coord, IBlockState sourceState)
     {
-        // TODO Fix for partial generation
+        startSeed(instanceData, context, coord, null);
+    }
+
+    @Override
+    public void startSeed(NBTNone instanceData, StructureSpawnContext context, BlockCoord coord, @Nullable TransformerSeeds.Channel channel)
+    {
+        BlockCoord origin = coord.subtract(0, 4, 0);
+        transformSeed(instanceData, context, origin, origin.x, origin.y, origin.z, channel);
+    }
+
+    @Override
+    public void transformSeed(NBTNone instanceData, StructureSpawnContext context, BlockCoord origin, int x, int y, int z, @Nullable TransformerSeeds.Channel channel)
+    {
         World world = context.world;
         Random random = context.random;
 
-        BiomeGenBase biome = world.getBiomeGenForCoords(coord.x, coord.z);
+        BiomeGenBase biome = world.getBiomeGenForCoords(origin.x, origin.z);
         Block topBlock = biome.topBlock != null ? biome.topBlock : Blocks.air;
         Block fillerBlock = biome.fillerBlock != null ? biome.fillerBlock : Blocks.air;
 
-        coord = coord.subtract(0, 4, 0);
-
-        int currentY = coord.y;
-        LinkedList<int[]> currentList = new LinkedList<>();
-        LinkedList<int[]> nextList = new LinkedList<>();
-        nextList.add(new int[]{coord.x, coord.z});
+        // Keeps the original fill order: each visited column is one block higher than the one before, and the two
+        // lists are swapped without being cleared. Only the positions handed to the channel are left out.
+        int currentY = y;
+        List<int[]> currentList = new ArrayList<>();
+        List<int[]> nextList = new ArrayList<>();
+        nextList.add(new int[]{x, z});
 
+        SurfaceHeightCache heights = SurfaceHeightCache.get(world);
         int worldHeight = world.getHeight();
         double naturalExpansionDistanceSq = naturalExpansionDistance * naturalExpansionDistance;
         while (!nextList.isEmpty() && currentY < worldHeight)
         {
-            LinkedList<int[]> cachedList = currentList;
+            List<int[]> cachedList = currentList;
             currentList = nextList;
             nextList = cachedList;
 
-            for (int i = 0; i < currentList.size(); i++)
+            for (int i = 0; i < currentList.size(); i++, currentY++)
             {
                 int[] currentPos = currentList.get(i);
                 int currentX = currentPos[0];
                 int currentZ = currentPos[1];
-                Block curBlock = world.getBlock(currentX, currentY, currentZ);
+
+                if (channel != null && !context.includes(currentX, currentY, currentZ))
+                {
+                    channel.defer(origin, currentX, currentY, currentZ);
+                    continue;
+                }
+
+                // Reading a chunk that doesn't exist would generate it
+                if (RCConfig.strictChunkGeneration && !world.blockExists(currentX, currentY, currentZ))
+                    continue;
+
+                // Air is replaceable, and setting it again changes nothing
+                boolean isAir = currentY > heights.top(currentX, currentZ);
+                Block curBlock = isAir ? Blocks.air : world.getBlock(currentX, currentY, currentZ);
 
                 boolean isFoliage = curBlock.isFoliage(world, currentX, currentY, currentZ) || curBlock.getMaterial() == Material.leaves || curBlock.getMaterial() == Material.plants || curBlock.getMaterial() == Material.wood;
                 boolean isCommon = curBlock == Blocks.stone || curBlock == Blocks.dirt || curBlock == Blocks.sand || curBlock == Blocks.stained_hardened_clay || curBlock == Blocks.gravel;
-                boolean replaceable = currentY == coord.y || curBlock == topBlock || curBlock == fillerBlock || curBlock.isReplaceable(world, currentX, currentY, currentZ)
+                boolean replaceable = currentY == origin.y || curBlock == topBlock || curBlock == fillerBlock || curBlock.isReplaceable(world, currentX, currentY, currentZ)
                         || isCommon || isFoliage;
 
-                if (replaceable)
+                if (replaceable && !isAir)
                     context.setBlock(currentX, currentY, currentZ, BlockStates.defaultState(Blocks.air));
 
                 if (replaceable || curBlock.getMaterial() == Material.air)
                 {
-                    double distToOrigSQ = IvVecMathHelper.distanceSQ(new double[]{coord.x, coord.y, coord.z}, new double[]{currentX, currentY, currentZ});
+                    double distToOrigSQ = IvVecMathHelper.distanceSQ(new double[]{origin.x, origin.y, origin.z}, new double[]{currentX, currentY, currentZ});
                     double add = (random.nextDouble() - random.nextDouble()) * naturalExpansionRandomization;
                     distToOrigSQ += add < 0 ? -(add * add) : (add * add);
 
                     if (distToOrigSQ < naturalExpansionDistanceSq)
                     {
-                        addIfNew(nextList, currentX, currentZ);
-                        addIfNew(nextList, currentX - 1, currentZ);
-                        addIfNew(nextList, currentX + 1, currentZ);
-                        addIfNew(nextList, currentX, currentZ - 1);
-                        addIfNew(nextList, currentX, currentZ + 1);
+                        nextList.add(new int[]{currentX, currentZ});
+                        nextList.add(new int[]{currentX - 1, currentZ});
+                        nextList.add(new int[]{currentX + 1, currentZ});
+                        nextList.add(new int[]{currentX, currentZ - 1});
+                        nextList.add(new int[]{currentX, currentZ + 1});
                     }
                 }
-
-                currentY++;
             }
         }
     }
 
-    private void addIfNew(List<int[]> list, int... object)
-    {
-        if (!list.contains(object))
-        {
-            list.add(object);
-        }
-    }
-
     @Override
     public String getDisplayString()
     {
@@ -6,7 +6,6 @@
 package ivorius.reccomplex.structures.generic.transformers;
 
 import com.google.gson.*;
-import ivorius.ivtoolkit.tools.IvWorldData;
 import ivorius.ivtoolkit.tools.MCRegistry;
 import ivorius.reccomplex.RecurrentComplex;
 import ivorius.reccomplex.blocks.RCBlocks;
@@ -18,6 +17,7 @@ import ivorius.reccomplex.json.JsonUtils;
 import ivorius.reccomplex.structures.StructureLoadContext;
 import ivorius.reccomplex.structures.StructurePrepareContext;
 import ivorius.reccomplex.structures.StructureSpawnContext;
+import ivorius.reccomplex.structures.generic.StructureTemplate;
 import ivorius.reccomplex.structures.generic.matchers.BlockMatcher;
 import ivorius.reccomplex.utils.IBlockState;
 import ivorius.reccomplex.utils.NBTNone;
@@ -52,7 +52,7 @@ public class TransformerNegativeSpace implements Transformer<NBTNone>
     }
 
     @Override
-    public void transform(NBTNone instanceData, Phase phase, StructureSpawnContext context, IvWorldData worldData, List<Pair<Transformer, NBTStorable>> transformers)
+    public void transform(NBTNone instanceData, Phase phase, StructureSpawnContext context, StructureTemplate template, List<Pair<Transformer, NBTStorable>> transformers)
     {
 
     }
@@ -14,6 +14,7 @@ import ivorius.reccomplex.gui.table.TableDataSource;
 import ivorius.reccomplex.gui.table.TableDelegate;
 import ivorius.reccomplex.gui.table.TableNavigator;
 import ivorius.reccomplex.json.JsonUtils;
+import ivorius.reccomplex.structures.StructureCosts;
 import ivorius.reccomplex.structures.StructureLoadContext;
 import ivorius.reccomplex.structures.StructurePrepareContext;
 import ivorius.reccomplex.structures.StructureSpawnContext;
@@ -21,6 +22,7 @@ import ivorius.reccomplex.structures.generic.matchers.BlockMatcher;
 import ivorius.reccomplex.utils.IBlockState;
 import ivorius.reccomplex.utils.BlockStates;
 import ivorius.reccomplex.utils.NBTNone;
+import ivorius.reccomplex.worldgen.SurfaceHeightCache;
 import net.minecraft.block.Block;
 import net.minecraft.block.material.Material;
 import net.minecraft.init.Blocks;
@@ -55,20 +57,30 @@ public class TransformerPillar extends TransformerSingleBlock<NBTNone>
         return sourceMatcher.apply(state);
     }
 
+    @Override
+    public int estimateCost(IBlockState state)
+    {
+        return sourceMatcher.apply(state) ? StructureCosts.PILLAR_COST : 0;
+    }
+
     @Override
     public void transformBlock(NBTNone instanceData, Phase phase, StructureSpawnContext context, BlockCoord coord, IBlockState sourceState)
     {
         if (RecurrentComplex.specialRegistry.isSafe(destState.getBlock()))
         {
-            // TODO Fix for partial generation
+            // Stays in the block's column, so it never reaches out of the generated chunk
             World world = context.world;
 
             int y = coord.y;
+            int top = SurfaceHeightCache.get(world).top(coord.x, coord.z);
 
             do
             {
                 context.setBlock(coord.x, y--, coord.z, destState);
 
+                if (y > top)
+                    continue; // Air, which is replaceable
+
                 Block block = world.getBlock(coord.x, y, coord.z);
                 if (!(block.isReplaceable(world, coord.x, y, coord.z) || block.getMaterial() == Material.leaves || block.isFoliage(world, coord.x, y, coord.z)))
                     break;
@@ -15,6 +15,7 @@ import ivorius.reccomplex.gui.table.TableDataSource;
 import ivorius.reccomplex.gui.table.TableDelegate;
 import ivorius.reccomplex.gui.table.TableNavigator;
 import ivorius.reccomplex.json.JsonUtils;
+import ivorius.reccomplex.structures.StructureCosts;
 import ivorius.reccomplex.structures.StructureLoadContext;
 import ivorius.reccomplex.structures.StructurePrepareContext;
 import ivorius.reccomplex.structures.StructureSpawnContext;
@@ -99,6 +100,12 @@ public class TransformerReplace extends TransformerSingleBlock<NBTNone>
         return sourceMatcher.apply(state);
     }
 
+    @Override
+    public int estimateCost(IBlockState state)
+    {
+        return sourceMatcher.apply(state) ? StructureCosts.BLOCK_COST : 0;
+    }
+
     @Override
     public void transformBlock(NBTNone instanceData, Phase phase, StructureSpawnContext context, BlockCoord coord, IBlockState sourceState)
     {
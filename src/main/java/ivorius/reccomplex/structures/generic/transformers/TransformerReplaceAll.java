@@ -16,6 +16,7 @@ import ivorius.reccomplex.gui.table.TableDataSource;
 import ivorius.reccomplex.gui.table.TableDelegate;
 import ivorius.reccomplex.gui.table.TableNavigator;
 import ivorius.reccomplex.json.JsonUtils;
+import ivorius.reccomplex.structures.StructureCosts;
 import ivorius.reccomplex.structures.StructureLoadContext;
 import ivorius.reccomplex.structures.StructurePrepareContext;
 import ivorius.reccomplex.structures.StructureSpawnContext;
@@ -68,6 +69,12 @@ public class TransformerReplaceAll extends TransformerSingleBlock<TransformerRep
         return sourceMatcher.apply(state);
     }
 
+    @Override
+    public int estimateCost(IBlockState state)
+    {
+        return sourceMatcher.apply(state) ? StructureCosts.BLOCK_COST : 0;
+    }
+
     @Override
     public void transformBlock(InstanceData instanceData, Phase phase, StructureSpawnContext context, BlockCoord coord, IBlockState sourceState)
     {
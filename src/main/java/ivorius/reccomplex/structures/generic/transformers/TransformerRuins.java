@@ -7,7 +7,6 @@ package ivorius.reccomplex.structures.generic.transformers;
 
 import com.google.gson.*;
 import ivorius.ivtoolkit.blocks.*;
-import ivorius.ivtoolkit.tools.IvWorldData;
 import ivorius.ivtoolkit.tools.MCRegistry;
 import ivorius.ivtoolkit.tools.NBTCompoundObjects;
 import ivorius.reccomplex.RecurrentComplex;
@@ -20,10 +19,11 @@ import ivorius.reccomplex.random.BlurredValueField;
 import ivorius.reccomplex.structures.StructureLoadContext;
 import ivorius.reccomplex.structures.StructurePrepareContext;
 import ivorius.reccomplex.structures.StructureSpawnContext;
+import ivorius.reccomplex.structures.generic.StructureTemplate;
 import ivorius.reccomplex.utils.IBlockState;
 import ivorius.reccomplex.utils.BlockStates;
 import ivorius.reccomplex.utils.NBTStorable;
-import net.minecraft.block.material.Material;
+import ivorius.reccomplex.worldgen.SurfaceHeightCache;
 import net.minecraft.init.Blocks;
 import net.minecraft.inventory.IInventory;
 import net.minecraft.nbt.NBTBase;
@@ -37,6 +37,7 @@ import net.minecraftforge.common.util.ForgeDirection;
 import org.apache.commons.lang3.tuple.Pair;
 
 import java.lang.reflect.Type;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.List;
 import java.util.Random;
@@ -71,14 +72,14 @@ public class TransformerRuins implements Transformer<TransformerRuins.InstanceDa
         this.vineGrowth = vineGrowth;
     }
 
-    private static boolean skipBlock(Collection<Pair<Transformer, NBTStorable>> transformers, final IBlockState state)
+    private static boolean skipBlock(Collection<Pair<Transformer, NBTStorable>> transformers, IBlockState state)
     {
-        return transformers.stream().anyMatch(input -> input.getLeft().skipGeneration(input.getRight(), state));
-    }
-
-    private static int getPass(IBlockState state)
-    {
-        return (state.getBlock().isNormalCube() || state.getBlock().getMaterial() == Material.air) ? 0 : 1;
+        for (Pair<Transformer, NBTStorable> pair : transformers)
+        {
+            if (pair.getLeft().skipGeneration(pair.getRight(), state))
+                return true;
+        }
+        return false;
     }
 
     public static void setBlockToAirClean(World world, BlockCoord blockCoord)
@@ -92,6 +93,7 @@ public class TransformerRuins implements Transformer<TransformerRuins.InstanceDa
         }
 
         world.setBlockToAir(blockCoord.x, blockCoord.y, blockCoord.z);
+        SurfaceHeightCache.invalidate(world, blockCoord.x, blockCoord.z);
     }
 
     public static void shuffleArray(Object[] ar, Random rand)
@@ -130,10 +132,11 @@ public class TransformerRuins implements Transformer<TransformerRuins.InstanceDa
     }
 
     @Override
-    public void transform(InstanceData instanceData, Phase phase, StructureSpawnContext context, IvWorldData worldData, List<Pair<Transformer, NBTStorable>> transformers)
+    public void transform(InstanceData instanceData, Phase phase, StructureSpawnContext context, StructureTemplate template, List<Pair<Transformer, NBTStorable>> transformers)
     {
-        IvBlockCollection blockCollection = worldData.blockCollection;
-        int[] size = context.boundingBoxSize();
+        BlockCoord lowerCoord = context.lowerCoord();
+        StructureTemplate.TransformMapping mapping = template.mapping(context.transform);
+        BitSet skipped = template.skippedPalette(transformers);
 
         StructureBoundingBox dropAreaBB = context.boundingBox;
         RecurrentComplex.forgeEventHandler.disabledTileDropAreas.add(dropAreaBB);
@@ -141,7 +144,7 @@ public class TransformerRuins implements Transformer<TransformerRuins.InstanceDa
         BlurredValueField field = instanceData.blurredValueField;
         if (field != null && field.getSize().length == 3)
         {
-            BlockArea sourceArea = new BlockArea(new BlockCoord(0, 0, 0), new BlockCoord(blockCollection.width, blockCollection.height, blockCollection.length));
+            BlockArea sourceArea = new BlockArea(new BlockCoord(0, 0, 0), new BlockCoord(template.width, template.height, template.length));
             BlockArea decaySideArea = BlockAreas.side(sourceArea, decayDirection.getOpposite());
             BlockCoord decaySideAreaPos = decaySideArea.getLowerCorner();
             int decaySideLength = BlockAreas.sideLength(sourceArea, decayDirection.getOpposite());
@@ -155,36 +158,41 @@ public class TransformerRuins implements Transformer<TransformerRuins.InstanceDa
 
                     for (int decayPos = 0; decayPos < removedBlocks && decayPos < decaySideLength; decayPos++)
                     {
-                        BlockCoord sourceCoord = surfaceSourceCoord.add(decayDirection.offsetX * decayPos, decayDirection.offsetY * decayPos, decayDirection.offsetZ * decayPos);
-                        BlockCoord worldCoord = context.transform.apply(sourceCoord, size).add(context.lowerCoord());
+                        int sourceX = surfaceSourceCoord.x + decayDirection.offsetX * decayPos;
+                        int sourceY = surfaceSourceCoord.y + decayDirection.offsetY * decayPos;
+                        int sourceZ = surfaceSourceCoord.z + decayDirection.offsetZ * decayPos;
+
+                        if (!template.contains(sourceX, sourceY, sourceZ))
+                            continue;
 
-                        if (context.includes(worldCoord))
+                        int worldX = lowerCoord.x + mapping.x(sourceX, sourceZ), worldY = lowerCoord.y + sourceY, worldZ = lowerCoord.z + mapping.z(sourceX, sourceZ);
+
+                        if (context.includes(worldX, worldY, worldZ))
                         {
-                            IBlockState state = BlockStates.at(blockCollection, sourceCoord);
+                            int paletteIndex = template.paletteIndex(template.index(sourceX, sourceY, sourceZ));
 
-                            if (getPass(state) == pass && !skipBlock(transformers, state))
-                                setBlockToAirClean(context.world, worldCoord);
+                            if (template.palettePass(paletteIndex) == pass && !skipped.get(paletteIndex))
+                                setBlockToAirClean(context.world, new BlockCoord(worldX, worldY, worldZ));
                         }
                     }
                 }
             }
         }
 
-        int[] areaSize = new int[]{blockCollection.width, blockCollection.height, blockCollection.length};
-        if (blockErosion > 0.0f || vineGrowth > 0.0f)
+        StructureBoundingBox sourceBB = template.sourceBounds(context.transform, lowerCoord, context.generationBB);
+        if ((blockErosion > 0.0f || vineGrowth > 0.0f) && sourceBB != null)
         {
-            for (BlockCoord sourceCoord : blockCollection)
-            {
-                BlockCoord worldCoord = context.transform.apply(sourceCoord, areaSize).add(context.lowerCoord());
-
-                if (context.includes(worldCoord))
-                {
-                    IBlockState state = BlockStates.at(context.world, worldCoord);
+            for (int z = sourceBB.minZ; z <= sourceBB.maxZ; z++)
+                for (int y = sourceBB.minY; y <= sourceBB.maxY; y++)
+                    for (int x = sourceBB.minX; x <= sourceBB.maxX; x++)
+                    {
+                        BlockCoord worldCoord = new BlockCoord(lowerCoord.x + mapping.x(x, z), lowerCoord.y + y, lowerCoord.z + mapping.z(x, z));
+                        IBlockState state = BlockStates.at(context.world, worldCoord);
 
-                    if (!skipBlock(transformers, state))
-                        decayBlock(context.world, context.random, state, worldCoord);
-                }
-            }
+                        int paletteIndex = template.paletteIndexOf(state);
+                        if (paletteIndex >= 0 ? !skipped.get(paletteIndex) : !skipBlock(transformers, state))
+                            decayBlock(context.world, context.random, state, worldCoord);
+                    }
         }
 
         RecurrentComplex.forgeEventHandler.disabledTileDropAreas.remove(dropAreaBB);
@@ -237,7 +245,10 @@ public class TransformerRuins implements Transformer<TransformerRuins.InstanceDa
         }
 
         if (state != newState)
+        {
             world.setBlock(coord.x, coord.y, coord.z, newState.getBlock(), BlockStates.getMetadata(newState), 3);
+            SurfaceHeightCache.invalidate(world, coord.x, coord.z);
+        }
     }
 
     @Override
@@ -0,0 +1,268 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.structures.generic.transformers;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import ivorius.ivtoolkit.blocks.BlockCoord;
+import ivorius.reccomplex.structures.StructureRegistry;
+import ivorius.reccomplex.utils.NBTStorable;
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagIntArray;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.gen.structure.StructureBoundingBox;
+import org.apache.commons.lang3.tuple.Pair;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Work of transformers with a reach (see {@link TransformerSingleBlock#reach}) that spilled out of the chunk it was
+ * started in. Each seed waits for its own chunk to generate, so that it's processed exactly once and never forces
+ * chunks to generate early. Seeds reaching chunks that already generated, or that aren't part of the structure, are
+ * processed right away if their chunk is populated, and dropped otherwise.
+ */
+public class TransformerSeeds implements NBTStorable
+{
+    protected final TLongObjectMap<List<Seed>> pending = new TLongObjectHashMap<>();
+    protected final TLongSet generatedChunks = new TLongHashSet();
+
+    protected int transformersSignature;
+
+    public TransformerSeeds()
+    {
+    }
+
+    public TransformerSeeds(NBTTagCompound compound)
+    {
+        NBTTagList pendingList = compound.getTagList("pending", 11);
+        for (int i = 0; i < pendingList.tagCount(); i++)
+        {
+            int[] seeds = pendingList.func_150306_c(i);
+            for (int s = 0; s + Seed.INTS <= seeds.length; s += Seed.INTS)
+                add(Seed.fromInts(seeds, s));
+        }
+
+        int[] generated = compound.getIntArray("generatedChunks");
+        for (int i = 0; i + 1 < generated.length; i += 2)
+            generatedChunks.add(ChunkCoordIntPair.chunkXZ2Int(generated[i], generated[i + 1]));
+
+        transformersSignature = compound.getInteger("transformers");
+    }
+
+    /**
+     * Seeds name their transformer by its position in the structure's list, so the list they were saved with has to
+     * be the same one they're continued with. Transformers are compared by their serialized form, so that swapping
+     * two of the same type or changing one's settings counts as a different list too.
+     */
+    public static int signature(List<Pair<Transformer, NBTStorable>> transformers)
+    {
+        int signature = 1;
+        for (Pair<Transformer, NBTStorable> pair : transformers)
+            signature = 31 * signature + StructureRegistry.INSTANCE.createJSONFromTransformer(pair.getLeft()).hashCode();
+        return signature;
+    }
+
+    private static long chunkKey(int x, int z)
+    {
+        return ChunkCoordIntPair.chunkXZ2Int(x >> 4, z >> 4);
+    }
+
+    public void markGenerated(int chunkX, int chunkZ)
+    {
+        generatedChunks.add(ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ));
+    }
+
+    public boolean isGenerated(int x, int z)
+    {
+        return generatedChunks.contains(chunkKey(x, z));
+    }
+
+    public boolean isEmpty()
+    {
+        return pending.isEmpty() && generatedChunks.isEmpty();
+    }
+
+    protected void add(Seed seed)
+    {
+        long key = chunkKey(seed.x, seed.z);
+        List<Seed> seeds = pending.get(key);
+        if (seeds == null)
+            pending.put(key, seeds = new ArrayList<>());
+        seeds.add(seed);
+    }
+
+    /**
+     * @return The pending seeds of the transformer in chunks touched by the area, removed from this collection.
+     */
+    public List<Seed> poll(int transformer, StructureBoundingBox area)
+    {
+        List<Seed> polled = new ArrayList<>();
+
+        for (int chunkX = area.minX >> 4; chunkX <= area.maxX >> 4; chunkX++)
+            for (int chunkZ = area.minZ >> 4; chunkZ <= area.maxZ >> 4; chunkZ++)
+            {
+                long key = ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ);
+                List<Seed> seeds = pending.get(key);
+                if (seeds == null)
+                    continue;
+
+                for (Iterator<Seed> iterator = seeds.iterator(); iterator.hasNext(); )
+                {
+                    Seed seed = iterator.next();
+                    if (seed.transformer == transformer)
+                    {
+                        polled.add(seed);
+                        iterator.remove();
+                    }
+                }
+
+                if (seeds.isEmpty())
+                    pending.remove(key);
+            }
+
+        return polled;
+    }
+
+    /**
+     * Drops the pending seeds if they were saved for a different list of transformers, for example because the
+     * structure was changed since.
+     */
+    public void matchTransformers(List<Pair<Transformer, NBTStorable>> transformers)
+    {
+        int signature = signature(transformers);
+        if (signature != transformersSignature)
+        {
+            pending.clear();
+            transformersSignature = signature;
+        }
+    }
+
+    /**
+     * @param area The area that generates chunk by chunk. Seeds outside of it are handed back right away, since no
+     *             chunk there will pick them up.
+     * @return The transformer's channel, or null if it isn't part of the list.
+     */
+    @Nullable
+    public Channel channel(List<Pair<Transformer, NBTStorable>> transformers, Transformer transformer, StructureBoundingBox area)
+    {
+        matchTransformers(transformers);
+
+        for (int i = 0; i < transformers.size(); i++)
+            if (transformers.get(i).getLeft() == transformer)
+                return new Channel(i, area);
+        return null;
+    }
+
+    @Override
+    public NBTBase writeToNBT()
+    {
+        NBTTagCompound compound = new NBTTagCompound();
+
+        NBTTagList pendingList = new NBTTagList();
+        for (List<Seed> seeds : pending.valueCollection())
+        {
+            int[] ints = new int[seeds.size() * Seed.INTS];
+            for (int i = 0; i < seeds.size(); i++)
+                seeds.get(i).toInts(ints, i * Seed.INTS);
+            pendingList.appendTag(new NBTTagIntArray(ints));
+        }
+        compound.setTag("pending", pendingList);
+
+        int[] generated = new int[generatedChunks.size() * 2];
+        int index = 0;
+        for (long key : generatedChunks.toArray())
+        {
+            generated[index++] = (int) key;
+            generated[index++] = (int) (key >> 32);
+        }
+        compound.setIntArray("generatedChunks", generated);
+
+        compound.setInteger("transformers", transformersSignature);
+
+        return compound;
+    }
+
+    /**
+     * A position some transformer's work has reached, started at the structure block at origin.
+     */
+    public static class Seed
+    {
+        protected static final int INTS = 7;
+
+        public final int transformer;
+        public final BlockCoord origin;
+        public final int x;
+        public final int y;
+        public final int z;
+
+        public Seed(int transformer, BlockCoord origin, int x, int y, int z)
+        {
+            this.transformer = transformer;
+            this.origin = origin;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        protected static Seed fromInts(int[] ints, int offset)
+        {
+            return new Seed(ints[offset], new BlockCoord(ints[offset + 1], ints[offset + 2], ints[offset + 3]), ints[offset + 4], ints[offset + 5], ints[offset + 6]);
+        }
+
+        protected void toInts(int[] ints, int offset)
+        {
+            ints[offset] = transformer;
+            ints[offset + 1] = origin.x;
+            ints[offset + 2] = origin.y;
+            ints[offset + 3] = origin.z;
+            ints[offset + 4] = x;
+            ints[offset + 5] = y;
+            ints[offset + 6] = z;
+        }
+    }
+
+    /**
+     * The seeds of a single transformer. Seeds that no later chunk will pick up are kept apart until {@link #pollReady()}.
+     */
+    public class Channel
+    {
+        public final int transformer;
+        public final StructureBoundingBox area;
+
+        protected final Deque<Seed> ready = new ArrayDeque<>();
+
+        public Channel(int transformer, StructureBoundingBox area)
+        {
+            this.transformer = transformer;
+            this.area = area;
+        }
+
+        public void defer(BlockCoord origin, int x, int y, int z)
+        {
+            Seed seed = new Seed(transformer, origin, x, y, z);
+
+            if (isGenerated(x, z) || x >> 4 < area.minX >> 4 || x >> 4 > area.maxX >> 4 || z >> 4 < area.minZ >> 4 || z >> 4 > area.maxZ >> 4)
+                ready.add(seed);
+            else
+                add(seed);
+        }
+
+        @Nullable
+        public Seed pollReady()
+        {
+            return ready.poll();
+        }
+    }
+}
@@ -6,14 +6,16 @@
 package ivorius.reccomplex.structures.generic.transformers;
 
 import ivorius.ivtoolkit.blocks.BlockCoord;
-import ivorius.ivtoolkit.blocks.IvBlockCollection;
-import ivorius.ivtoolkit.tools.IvWorldData;
+import ivorius.reccomplex.structures.StructureCosts;
+import ivorius.reccomplex.structures.StructureInfos;
 import ivorius.reccomplex.structures.StructureSpawnContext;
+import ivorius.reccomplex.structures.generic.StructureTemplate;
 import ivorius.reccomplex.utils.IBlockState;
-import ivorius.reccomplex.utils.BlockStates;
 import ivorius.reccomplex.utils.NBTStorable;
+import net.minecraft.world.gen.structure.StructureBoundingBox;
 import org.apache.commons.lang3.tuple.Pair;
 
+import javax.annotation.Nullable;
 import java.util.List;
 
 /**
@@ -28,27 +30,102 @@ public abstract class TransformerSingleBlock<S extends NBTStorable> implements T
     }
 
     @Override
-    public void transform(S instanceData, Phase phase, StructureSpawnContext context, IvWorldData worldData, List<Pair<Transformer, NBTStorable>> transformers)
+    public void transform(S instanceData, Phase phase, StructureSpawnContext context, StructureTemplate template, List<Pair<Transformer, NBTStorable>> transformers)
     {
-        IvBlockCollection blockCollection = worldData.blockCollection;
-        int[] areaSize = new int[]{blockCollection.width, blockCollection.height, blockCollection.length};
         BlockCoord lowerCoord = context.lowerCoord();
+        StructureTemplate.TransformMapping mapping = template.mapping(context.transform);
 
-        for (BlockCoord sourceCoord : blockCollection)
+        boolean[] matchingPalette = new boolean[template.paletteSize()];
+        for (int i = 0; i < matchingPalette.length; i++)
+            matchingPalette[i] = matches(instanceData, template.paletteState(i));
+
+        TransformerSeeds seeds = context.getTransformerSeeds();
+        TransformerSeeds.Channel channel = seeds != null && context.generationBB != null && reach(instanceData) > 0
+                ? seeds.channel(transformers, this, context.boundingBox)
+                : null;
+
+        StructureBoundingBox sourceBB = template.sourceBounds(context.transform, lowerCoord, context.generationBB);
+        if (sourceBB != null)
         {
-            BlockCoord worldCoord = context.transform.apply(sourceCoord, areaSize).add(lowerCoord);
+            for (int z = sourceBB.minZ; z <= sourceBB.maxZ; z++)
+                for (int y = sourceBB.minY; y <= sourceBB.maxY; y++)
+                    for (int x = sourceBB.minX, index = template.index(x, y, z); x <= sourceBB.maxX; x++, index++)
+                    {
+                        if (matchingPalette[template.paletteIndex(index)])
+                        {
+                            BlockCoord worldCoord = new BlockCoord(lowerCoord.x + mapping.x(x, z), lowerCoord.y + y, lowerCoord.z + mapping.z(x, z));
+
+                            if (channel != null)
+                                startSeed(instanceData, context, worldCoord, channel);
+                            else
+                                transformBlock(instanceData, Phase.BEFORE, context, worldCoord, template.state(index));
+                        }
+                    }
+        }
 
-            if (context.includes(worldCoord))
-            {
-                IBlockState state = BlockStates.at(blockCollection, sourceCoord);
+        if (channel != null)
+            transformSeeds(instanceData, context, channel);
+    }
 
-                if (matches(instanceData, state))
-                    transformBlock(instanceData, Phase.BEFORE, context, worldCoord, state);
-            }
+    /**
+     * Continues the work other chunks left to this one, then the work that reached chunks which already generated.
+     */
+    protected void transformSeeds(S instanceData, StructureSpawnContext context, TransformerSeeds.Channel channel)
+    {
+        for (TransformerSeeds.Seed seed : context.getTransformerSeeds().poll(channel.transformer, context.generationBB))
+            transformSeed(instanceData, context, seed.origin, seed.x, seed.y, seed.z, channel);
+
+        TransformerSeeds.Seed seed;
+        while ((seed = channel.pollReady()) != null)
+        {
+            int chunkX = seed.x >> 4, chunkZ = seed.z >> 4;
+            if (!context.world.getChunkProvider().chunkExists(chunkX, chunkZ) || !context.world.getChunkFromChunkCoords(chunkX, chunkZ).isTerrainPopulated)
+                continue;
+
+            StructureSpawnContext chunkContext = StructureSpawnContext.partial(context.world, context.random, context.transform, context.boundingBox,
+                    StructureInfos.chunkBoundingBox(chunkX, chunkZ), context.generationLayer, context.generateAsSource, false);
+            transformSeed(instanceData, chunkContext, seed.origin, seed.x, seed.y, seed.z, channel);
         }
     }
 
     public abstract boolean matches(S instanceData, IBlockState state);
 
     public abstract void transformBlock(S instanceData, Phase phase, StructureSpawnContext context, BlockCoord coord, IBlockState sourceState);
+
+    /**
+     * How far, horizontally, the work started at a single block may spread. When generating chunk by chunk, transformers
+     * with a reach get their work through {@link #transformSeed} instead of {@link #transformBlock}, and pass on every
+     * position outside the generated chunk to the channel. It's continued once that chunk generates.
+     */
+    public int reach(S instanceData)
+    {
+        return 0;
+    }
+
+    /**
+     * Roughly how much work the transformer does for a structure block in the given state, in
+     * {@link StructureCosts#BLOCK_COST}. It's estimated before any instance data exists, so the default assumes every
+     * block is transformed once.
+     */
+    public int estimateCost(IBlockState state)
+    {
+        return StructureCosts.BLOCK_COST;
+    }
+
+    /**
+     * Starts the work of the structure block at coord, by default at the block itself.
+     */
+    public void startSeed(S instanceData, StructureSpawnContext context, BlockCoord coord, @Nullable TransformerSeeds.Channel channel)
+    {
+        transformSeed(instanceData, context, coord, coord.x, coord.y, coord.z, channel);
+    }
+
+    /**
+     * Continues the work started at the structure block at origin, at the given position.
+     *
+     * @param channel Takes positions outside of {@link StructureSpawnContext#generationBB}. If null, there is nothing to hand them to.
+     */
+    public void transformSeed(S instanceData, StructureSpawnContext context, BlockCoord origin, int x, int y, int z, @Nullable TransformerSeeds.Channel channel)
+    {
+    }
 }
@@ -8,10 +8,12 @@ package ivorius.reccomplex.structures.schematics;
 import ivorius.ivtoolkit.blocks.BlockArea;
 import ivorius.ivtoolkit.blocks.BlockCoord;
 import ivorius.ivtoolkit.tools.IvWorldData;
+import ivorius.reccomplex.RCConfig;
 import ivorius.reccomplex.utils.IBlockState;
 import ivorius.reccomplex.utils.BlockStates;
 import ivorius.reccomplex.utils.IvStreams;
 import ivorius.reccomplex.utils.RCAccessorEntity;
+import ivorius.reccomplex.worldgen.ChunkSectionWriter;
 import net.minecraft.block.Block;
 import net.minecraft.block.material.Material;
 import net.minecraft.entity.Entity;
@@ -132,31 +134,44 @@ public class SchematicFile
                 tileEntities.put(new BlockCoord(tileEntity), tileEntity);
         }
 
-        BlockArea blockArea = BlockArea.areaFromSize(new BlockCoord(0, 0, 0), new int[]{width, height, length});
-        for (int pass = 0; pass < 2; pass++)
+        ChunkSectionWriter sectionWriter = RCConfig.directBlockPlacement ? new ChunkSectionWriter(world) : null;
+
+        try
         {
-            for (BlockCoord srcCoord : blockArea)
+            BlockArea blockArea = BlockArea.areaFromSize(new BlockCoord(0, 0, 0), new int[]{width, height, length});
+            for (int pass = 0; pass < 2; pass++)
             {
-                int index = getBlockIndex(srcCoord.x, srcCoord.y, srcCoord.z);
-                IBlockState blockState = blockStates[index];
-
-                if (blockState != null && getPass(blockState) == pass)
+                for (BlockCoord srcCoord : blockArea)
                 {
-                    BlockCoord worldPos = srcCoord.add(x, y, z);
-                    world.setBlock(worldPos.x, worldPos.y, worldPos.z, blockState.getBlock(), BlockStates.getMetadata(blockState), 3);
+                    int index = getBlockIndex(srcCoord.x, srcCoord.y, srcCoord.z);
+                    IBlockState blockState = blockStates[index];
 
-                    TileEntity tileEntity = tileEntities.get(srcCoord);
-                    if (tileEntity != null)
+                    if (blockState != null && getPass(blockState) == pass)
                     {
-                        world.setBlockMetadataWithNotify(worldPos.x, worldPos.y, worldPos.z, BlockStates.getMetadata(blockState), 2); // TODO Figure out why some blocks (chests, furnace) need this
-
-                        IvWorldData.setTileEntityPosForGeneration(tileEntity, worldPos);
-                        world.setTileEntity(worldPos.x, worldPos.y, worldPos.z, tileEntity);
-                        tileEntity.updateContainingBlockInfo();
+                        BlockCoord worldPos = srcCoord.add(x, y, z);
+                        if (sectionWriter != null)
+                            sectionWriter.setBlock(worldPos.x, worldPos.y, worldPos.z, blockState.getBlock(), BlockStates.getMetadata(blockState));
+                        else
+                            world.setBlock(worldPos.x, worldPos.y, worldPos.z, blockState.getBlock(), BlockStates.getMetadata(blockState), 3);
+
+                        TileEntity tileEntity = tileEntities.get(srcCoord);
+                        if (tileEntity != null)
+                        {
+                            world.setBlockMetadataWithNotify(worldPos.x, worldPos.y, worldPos.z, BlockStates.getMetadata(blockState), 2); // TODO Figure out why some blocks (chests, furnace) need this
+
+                            IvWorldData.setTileEntityPosForGeneration(tileEntity, worldPos);
+                            world.setTileEntity(worldPos.x, worldPos.y, worldPos.z, tileEntity);
+                            tileEntity.updateContainingBlockInfo();
+                        }
                     }
                 }
             }
         }
+        finally
+        {
+            if (sectionWriter != null)
+                sectionWriter.flush();
+        }
 
         for (NBTTagCompound entityCompound : entityCompounds)
         {
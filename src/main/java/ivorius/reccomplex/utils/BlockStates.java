@@ -17,24 +17,53 @@ import javax.annotation.Nonnull;
  */
 public class BlockStates
 {
+    public static final int MAX_BLOCK_IDS = 4096;
+    public static final int MAX_METADATA = 16;
+
+    /**
+     * Shared states by block id and metadata, filled as they are requested.
+     * States outside of the table (unregistered blocks, odd metadata) are still created anew.
+     */
+    private static final BlockState[] STATES = new BlockState[MAX_BLOCK_IDS * MAX_METADATA];
+
     public static IBlockState defaultState(@Nonnull  Block block)
     {
-        return new BlockState(block, 0);
+        return get(block, 0);
     }
 
     public static IBlockState fromMetadata(@Nonnull  Block block, int metadata)
     {
-        return new BlockState(block, metadata);
+        return get(block, metadata);
     }
 
     public static IBlockState at(World world, BlockCoord coord)
     {
-        return new BlockState(world.getBlock(coord.x, coord.y, coord.z), world.getBlockMetadata(coord.x, coord.y, coord.z));
+        return get(world.getBlock(coord.x, coord.y, coord.z), world.getBlockMetadata(coord.x, coord.y, coord.z));
     }
 
     public static IBlockState at(IvBlockCollection collection, BlockCoord coord)
     {
-        return new BlockState(collection.getBlock(coord), collection.getMetadata(coord));
+        return get(collection.getBlock(coord), collection.getMetadata(coord));
+    }
+
+    private static BlockState get(@Nonnull Block block, int metadata)
+    {
+        int id = Block.getIdFromBlock(block);
+        if (id < 0 || id >= MAX_BLOCK_IDS || metadata < 0 || metadata >= MAX_METADATA)
+            return new BlockState(block, metadata);
+
+        int index = id * MAX_METADATA + metadata;
+        BlockState state = STATES[index];
+        if (state == null || state.block != block)
+        {
+            synchronized (STATES)
+            {
+                state = STATES[index];
+                if (state == null || state.block != block) // Ids are remapped between worlds
+                    STATES[index] = state = new BlockState(block, metadata);
+            }
+        }
+        return state;
     }
 
     public static int getMetadata(IBlockState state)
@@ -62,7 +91,7 @@ public class BlockStates
 
         public IBlockState with(int metadata)
         {
-            return new BlockState(block, metadata);
+            return get(block, metadata);
         }
 
         @Override
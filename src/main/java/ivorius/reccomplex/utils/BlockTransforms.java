@@ -0,0 +1,67 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.utils;
+
+import net.minecraft.block.Block;
+import net.minecraft.world.World;
+import net.minecraftforge.common.util.ForgeDirection;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Created by lukas on 18.10.16.
+ */
+public class BlockTransforms
+{
+    private static final String[] ON_BLOCK_ADDED = {"onBlockAdded", "func_149726_b"};
+    private static final String[] ROTATE_BLOCK = {"rotateBlock"};
+
+    private static final Map<Class<?>, Boolean> CONTEXT_FREE = new ConcurrentHashMap<>();
+
+    /**
+     * Blocks that don't override onBlockAdded or rotateBlock are rotated by Forge's RotationHelper, which only
+     * looks at the block's own metadata. Others may look at their neighbors (rails, stairs, torches) or other
+     * world state, so where they end up can't be reused for another placement.
+     *
+     * @return Whether the block always ends up in the same state when placed and rotated, wherever it is.
+     */
+    public static boolean isTransformContextFree(Block block)
+    {
+        Boolean contextFree = CONTEXT_FREE.get(block.getClass());
+        if (contextFree == null)
+        {
+            contextFree = !overrides(block.getClass(), ON_BLOCK_ADDED, World.class, int.class, int.class, int.class)
+                    && !overrides(block.getClass(), ROTATE_BLOCK, World.class, int.class, int.class, int.class, ForgeDirection.class);
+            CONTEXT_FREE.put(block.getClass(), contextFree);
+        }
+        return contextFree;
+    }
+
+    private static boolean overrides(Class<?> clazz, String[] names, Class<?>... parameterTypes)
+    {
+        for (; clazz != null && clazz != Block.class; clazz = clazz.getSuperclass())
+        {
+            for (String name : names)
+            {
+                try
+                {
+                    clazz.getDeclaredMethod(name, parameterTypes);
+                    return true;
+                }
+                catch (NoSuchMethodException ignored)
+                {
+                }
+                catch (LinkageError e)
+                {
+                    return true; // Can't tell, so don't trust it
+                }
+            }
+        }
+
+        return false;
+    }
+}
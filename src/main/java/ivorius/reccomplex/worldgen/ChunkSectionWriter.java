@@ -0,0 +1,150 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.worldgen;
+
+import ivorius.reccomplex.RCConfig;
+import net.minecraft.block.Block;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.init.Blocks;
+import net.minecraft.network.play.server.S21PacketChunkData;
+import net.minecraft.server.management.PlayerManager;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Writes blocks straight into the chunk's section arrays, skipping the height map, lighting and block update work
+ * World.setBlock does for every single block. That work is done once per touched chunk in {@link #flush()}: changed
+ * sections are sent to watching players once, and each section with changed light or opacity is relit once against the
+ * finished structure instead of after every write, see {@link LightUpdateQueue.DirtyColumn}.
+ * <br>
+ * Blocks with tile entities, or replacing ones, still go through the world so tile entities are created and removed properly.
+ * Blocks written this way don't receive onBlockAdded.
+ */
+public class ChunkSectionWriter
+{
+    public final World world;
+
+    protected final Map<Chunk, int[]> changedSections = new IdentityHashMap<>();
+    protected final Map<Chunk, LightUpdateQueue.DirtyColumn> lightChanges = new IdentityHashMap<>();
+
+    private Chunk lastChunk;
+
+    public ChunkSectionWriter(World world)
+    {
+        this.world = world;
+    }
+
+    public boolean setBlock(int x, int y, int z, Block block, int metadata)
+    {
+        if (y < 0 || y >= 256)
+            return false;
+
+        Chunk chunk = chunk(x >> 4, z >> 4);
+        Block previous = chunk.getBlock(x & 15, y, z & 15);
+        int previousMetadata = chunk.getBlockMetadata(x & 15, y, z & 15);
+
+        if (block.hasTileEntity(metadata) || previous.hasTileEntity(previousMetadata))
+            return world.setBlock(x, y, z, block, metadata, 2);
+
+        ExtendedBlockStorage[] storages = chunk.getBlockStorageArray();
+        ExtendedBlockStorage storage = storages[y >> 4];
+        if (storage == null)
+        {
+            if (block == Blocks.air)
+                return false;
+
+            storages[y >> 4] = storage = new ExtendedBlockStorage(y >> 4 << 4, !world.provider.hasNoSky);
+        }
+
+        storage.func_150818_a(x & 15, y & 15, z & 15, block);
+        storage.setExtBlockMetadata(x & 15, y & 15, z & 15, metadata);
+
+        boolean emissionChanged = block.getLightValue() != previous.getLightValue(), opacityChanged = block.getLightOpacity() != previous.getLightOpacity();
+        if (emissionChanged || opacityChanged)
+        {
+            LightUpdateQueue.DirtyColumn column = lightChanges.get(chunk);
+            if (column == null)
+                lightChanges.put(chunk, column = new LightUpdateQueue.DirtyColumn(chunk.xPosition, chunk.zPosition));
+            column.mark(x, y, z, emissionChanged, opacityChanged);
+        }
+
+        int[] sections = changedSections.get(chunk);
+        if (sections == null)
+            changedSections.put(chunk, sections = new int[1]);
+        sections[0] |= 1 << (y >> 4);
+
+        return true;
+    }
+
+    /**
+     * Sends the changed sections to players who already have the chunk, in one packet each, rather than queueing
+     * every changed block with the player manager. Players who don't have it yet get the whole chunk later anyway.
+     */
+    protected void sendSections(Chunk chunk, int sectionMask)
+    {
+        if (!(world instanceof WorldServer))
+        {
+            world.markBlockRangeForRenderUpdate(chunk.xPosition << 4, 0, chunk.zPosition << 4, (chunk.xPosition << 4) + 15, 255, (chunk.zPosition << 4) + 15);
+            return;
+        }
+
+        PlayerManager playerManager = ((WorldServer) world).getPlayerManager();
+        S21PacketChunkData packet = null;
+
+        for (Object player : world.playerEntities)
+        {
+            EntityPlayerMP playerMP = (EntityPlayerMP) player;
+            if (playerManager.isPlayerWatchingChunk(playerMP, chunk.xPosition, chunk.zPosition))
+            {
+                if (packet == null)
+                    packet = new S21PacketChunkData(chunk, false, sectionMask);
+                playerMP.playerNetServerHandler.sendPacket(packet);
+            }
+        }
+    }
+
+    protected Chunk chunk(int chunkX, int chunkZ)
+    {
+        Chunk chunk = lastChunk;
+        if (chunk == null || chunk.xPosition != chunkX || chunk.zPosition != chunkZ)
+            lastChunk = chunk = world.getChunkFromChunkCoords(chunkX, chunkZ);
+        return chunk;
+    }
+
+    /**
+     * Recomputes height maps and sky light of every touched chunk. Sections that changed light or opacity are relit
+     * right away, or handed to the world's {@link LightUpdateQueue} if lighting is spread over ticks. Then sends the
+     * changed sections to watching players.
+     */
+    public void flush()
+    {
+        for (Chunk chunk : changedSections.keySet())
+        {
+            chunk.generateSkylightMap();
+            chunk.setChunkModified();
+        }
+
+        if (RCConfig.lightUpdatesPerTick > 0)
+            LightUpdateQueue.get(world).addAll(lightChanges.values());
+        else
+        {
+            for (LightUpdateQueue.DirtyColumn column : lightChanges.values())
+                column.relight(world, 16);
+        }
+
+        for (Map.Entry<Chunk, int[]> entry : changedSections.entrySet())
+            sendSections(entry.getKey(), entry.getValue()[0]);
+
+        changedSections.clear();
+        lightChanges.clear();
+        lastChunk = null;
+    }
+}
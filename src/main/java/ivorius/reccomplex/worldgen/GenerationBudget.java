@@ -0,0 +1,86 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.worldgen;
+
+import ivorius.reccomplex.RCConfig;
+import net.minecraft.world.World;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Keeps track of the estimated structure cost (see {@link ivorius.reccomplex.structures.StructureCosts}) a world
+ * generated in its current tick, against {@link RCConfig#tickGenerationCostBudget}.
+ */
+public class GenerationBudget
+{
+    private static final Map<World, GenerationBudget> BUDGETS = new WeakHashMap<>();
+
+    protected long tick = -1;
+    protected int used;
+
+    protected long totalUsed;
+    protected long deferred;
+
+    public static GenerationBudget get(World world)
+    {
+        GenerationBudget budget = BUDGETS.get(world);
+        if (budget == null)
+            BUDGETS.put(world, budget = new GenerationBudget());
+        return budget;
+    }
+
+    protected void update(World world)
+    {
+        long time = world.getTotalWorldTime();
+        if (time != tick)
+        {
+            tick = time;
+            used = 0;
+        }
+    }
+
+    /**
+     * Nothing is over budget while none of it is used yet, so a single structure costing more than the whole budget
+     * still generates eventually.
+     */
+    public boolean fits(World world, int cost)
+    {
+        if (RCConfig.tickGenerationCostBudget <= 0)
+            return true;
+
+        update(world);
+        return used == 0 || used + cost <= RCConfig.tickGenerationCostBudget;
+    }
+
+    public void consume(World world, int cost)
+    {
+        update(world);
+        used += cost;
+        totalUsed += cost;
+    }
+
+    public void defer()
+    {
+        deferred++;
+    }
+
+    public int used(World world)
+    {
+        update(world);
+        return used;
+    }
+
+    public long totalUsed()
+    {
+        return totalUsed;
+    }
+
+    public long deferred()
+    {
+        return deferred;
+    }
+}
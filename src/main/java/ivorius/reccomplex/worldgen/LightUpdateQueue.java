@@ -0,0 +1,217 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.worldgen;
+
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.EnumSkyBlock;
+import net.minecraft.world.World;
+
+import java.util.*;
+
+/**
+ * Light updates left over from structure generation, resolved a few sections at a time on world ticks. Every world
+ * has its own queue, and spends its own budget on it.
+ */
+public class LightUpdateQueue
+{
+    private static final Map<World, LightUpdateQueue> QUEUES = new WeakHashMap<>();
+
+    protected final TLongObjectMap<DirtyColumn> pending = new TLongObjectHashMap<>();
+    /**
+     * The keys of the pending columns, in the order they were first added.
+     */
+    protected final TLongList order = new TLongArrayList();
+
+    public static LightUpdateQueue get(World world)
+    {
+        LightUpdateQueue queue = QUEUES.get(world);
+        if (queue == null)
+            QUEUES.put(world, queue = new LightUpdateQueue());
+        return queue;
+    }
+
+    public static void tick(World world, int maxSections)
+    {
+        LightUpdateQueue queue = QUEUES.get(world);
+        if (queue != null)
+            queue.resolve(world, maxSections);
+    }
+
+    public void addAll(Collection<DirtyColumn> columns)
+    {
+        for (DirtyColumn column : columns)
+        {
+            long key = column.key();
+            DirtyColumn existing = pending.get(key);
+            if (existing != null)
+                existing.merge(column);
+            else
+            {
+                pending.put(key, column);
+                order.add(key);
+            }
+        }
+    }
+
+    public int size()
+    {
+        int size = 0;
+        for (DirtyColumn column : pending.valueCollection())
+            size += column.size();
+        return size;
+    }
+
+    /**
+     * @return The number of sections that were relit.
+     */
+    public int resolve(World world, int maxSections)
+    {
+        int sections = 0, done = 0;
+        while (sections < maxSections && done < order.size())
+        {
+            long key = order.get(done);
+            DirtyColumn column = pending.get(key);
+            sections += column.relight(world, maxSections - sections);
+
+            // A column is only left unfinished once the budget is used up
+            if (column.size() > 0)
+                break;
+
+            pending.remove(key);
+            done++;
+        }
+        order.remove(0, done);
+        return sections;
+    }
+
+    /**
+     * The positions of one chunk whose light emission or opacity changed, by section.
+     * <br>
+     * Sky light is already recomputed per column when the chunk's sky light map is regenerated, and spread sideways
+     * by the chunk's own gap checks. So a section is relit once by checking only the positions that can still be
+     * wrong: changed light sources, and changed opacity where there is light around to block or let through.
+     */
+    public static class DirtyColumn
+    {
+        public final int chunkX;
+        public final int chunkZ;
+
+        protected final BitSet[] emission = new BitSet[16];
+        protected final BitSet[] opacity = new BitSet[16];
+
+        public DirtyColumn(int chunkX, int chunkZ)
+        {
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+        }
+
+        public long key()
+        {
+            return ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ);
+        }
+
+        public void mark(int x, int y, int z, boolean emissionChanged, boolean opacityChanged)
+        {
+            int section = y >> 4, index = (x & 15) | (z & 15) << 4 | (y & 15) << 8;
+
+            if (emissionChanged)
+                bits(emission, section).set(index);
+            if (opacityChanged)
+                bits(opacity, section).set(index);
+        }
+
+        private static BitSet bits(BitSet[] sections, int section)
+        {
+            BitSet bits = sections[section];
+            if (bits == null)
+                sections[section] = bits = new BitSet(16 * 16 * 16);
+            return bits;
+        }
+
+        public void merge(DirtyColumn column)
+        {
+            for (int section = 0; section < 16; section++)
+            {
+                if (column.emission[section] != null)
+                    bits(emission, section).or(column.emission[section]);
+                if (column.opacity[section] != null)
+                    bits(opacity, section).or(column.opacity[section]);
+            }
+        }
+
+        /**
+         * @return The number of dirty sections.
+         */
+        public int size()
+        {
+            int size = 0;
+            for (int section = 0; section < 16; section++)
+            {
+                if (emission[section] != null || opacity[section] != null)
+                    size++;
+            }
+            return size;
+        }
+
+        /**
+         * Relights dirty sections from the bottom up.
+         *
+         * @return The number of sections that were relit.
+         */
+        public int relight(World world, int maxSections)
+        {
+            int sections = 0;
+            for (int section = 0; section < 16 && sections < maxSections; section++)
+            {
+                if (emission[section] != null || opacity[section] != null)
+                {
+                    relightSection(world, section, emission[section], opacity[section]);
+                    emission[section] = null;
+                    opacity[section] = null;
+                    sections++;
+                }
+            }
+            return sections;
+        }
+
+        protected void relightSection(World world, int section, BitSet emission, BitSet opacity)
+        {
+            boolean sky = !world.provider.hasNoSky;
+            BitSet changed = new BitSet(16 * 16 * 16);
+            if (emission != null)
+                changed.or(emission);
+            if (opacity != null)
+                changed.or(opacity);
+
+            for (int index = changed.nextSetBit(0); index >= 0; index = changed.nextSetBit(index + 1))
+            {
+                int x = chunkX << 4 | index & 15, y = section << 4 | index >> 8 & 15, z = chunkZ << 4 | index >> 4 & 15;
+                boolean opacityChanged = opacity != null && opacity.get(index);
+
+                if ((emission != null && emission.get(index)) || opacityChanged && isLit(world, EnumSkyBlock.Block, x, y, z))
+                    world.updateLightByType(EnumSkyBlock.Block, x, y, z);
+                if (sky && opacityChanged && isLit(world, EnumSkyBlock.Sky, x, y, z))
+                    world.updateLightByType(EnumSkyBlock.Sky, x, y, z);
+            }
+        }
+
+        /**
+         * @return Whether the position holds light that may have to be blocked now, or is next to light that may
+         * pass through now.
+         */
+        protected static boolean isLit(World world, EnumSkyBlock type, int x, int y, int z)
+        {
+            return world.getSavedLightValue(type, x, y, z) > 0
+                    || world.getSavedLightValue(type, x - 1, y, z) > 1 || world.getSavedLightValue(type, x + 1, y, z) > 1
+                    || world.getSavedLightValue(type, x, y - 1, z) > 1 || world.getSavedLightValue(type, x, y + 1, z) > 1
+                    || world.getSavedLightValue(type, x, y, z - 1) > 1 || world.getSavedLightValue(type, x, y, z + 1) > 1;
+        }
+    }
+}
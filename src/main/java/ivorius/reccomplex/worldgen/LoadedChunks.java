@@ -0,0 +1,163 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.worldgen;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.material.Material;
+import net.minecraft.init.Blocks;
+import net.minecraft.tileentity.TileEntity;
+import net.minecraft.world.IBlockAccess;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.BiomeGenBase;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.storage.ExtendedBlockStorage;
+import net.minecraft.world.gen.structure.StructureBoundingBox;
+import net.minecraftforge.common.util.ForgeDirection;
+
+/**
+ * The chunks around an area, as far as they are loaded. Chunks are looked up once on the server thread, and their
+ * sections are then read directly, without copying them. Other threads may only read it while the server thread waits
+ * for them, so nothing changes underneath. Tile entities and light are not available.
+ */
+public class LoadedChunks implements IBlockAccess
+{
+    protected final int minChunkX;
+    protected final int minChunkZ;
+    protected final int chunksX;
+    protected final int chunksZ;
+
+    protected final int height;
+
+    protected final Chunk[] chunks;
+
+    protected LoadedChunks(World world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ)
+    {
+        this.minChunkX = minChunkX;
+        this.minChunkZ = minChunkZ;
+        chunksX = maxChunkX - minChunkX + 1;
+        chunksZ = maxChunkZ - minChunkZ + 1;
+        height = world.getHeight();
+
+        chunks = new Chunk[chunksX * chunksZ];
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++)
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++)
+            {
+                if (world.getChunkProvider().chunkExists(chunkX, chunkZ))
+                    chunks[(chunkX - minChunkX) + (chunkZ - minChunkZ) * chunksX] = world.getChunkFromChunkCoords(chunkX, chunkZ);
+            }
+    }
+
+    public static LoadedChunks of(World world, StructureBoundingBox area)
+    {
+        return new LoadedChunks(world, area.minX >> 4, area.minZ >> 4, area.maxX >> 4, area.maxZ >> 4);
+    }
+
+    protected Chunk chunk(int x, int z)
+    {
+        int chunkX = (x >> 4) - minChunkX, chunkZ = (z >> 4) - minChunkZ;
+        return chunkX >= 0 && chunkZ >= 0 && chunkX < chunksX && chunkZ < chunksZ ? chunks[chunkX + chunkZ * chunksX] : null;
+    }
+
+    protected ExtendedBlockStorage storage(int x, int y, int z)
+    {
+        Chunk chunk = chunk(x, z);
+        if (chunk == null || y < 0 || y >= height)
+            return null;
+
+        ExtendedBlockStorage[] storages = chunk.getBlockStorageArray();
+        return (y >> 4) < storages.length ? storages[y >> 4] : null;
+    }
+
+    public boolean columnExists(int x, int z)
+    {
+        return chunk(x, z) != null;
+    }
+
+    @Override
+    public Block getBlock(int x, int y, int z)
+    {
+        ExtendedBlockStorage storage = storage(x, y, z);
+        return storage != null ? storage.getBlockByExtId(x & 15, y & 15, z & 15) : Blocks.air;
+    }
+
+    @Override
+    public int getBlockMetadata(int x, int y, int z)
+    {
+        ExtendedBlockStorage storage = storage(x, y, z);
+        return storage != null ? storage.getExtBlockMetadata(x & 15, y & 15, z & 15) : 0;
+    }
+    @Override
+    public TileEntity getTileEntity(int x, int y, int z)
+    {
+        return null;
+    }
+
+    @Override
+    public int getLightBrightnessForSkyBlocks(int x, int y, int z, int minLight)
+    {
+        return 0;
+    }
+
+    @Override
+    public int isBlockProvidingPowerTo(int x, int y, int z, int side)
+    {
+        return 0;
+    }
+
+    @Override
+    public boolean isAirBlock(int x, int y, int z)
+    {
+        return getBlock(x, y, z).isAir(this, x, y, z);
+    }
+
+    @Override
+    public BiomeGenBase getBiomeGenForCoords(int x, int z)
+    {
+        Chunk chunk = chunk(x, z);
+        BiomeGenBase biome = chunk != null ? BiomeGenBase.getBiome(chunk.getBiomeArray()[(z & 15) << 4 | (x & 15)] & 255) : null;
+        return biome != null ? biome : BiomeGenBase.plains;
+    }
+
+    @Override
+    public int getHeight()
+    {
+        return height;
+    }
+
+    @Override
+    public boolean extendedLevelsInChunkCache()
+    {
+        return false;
+    }
+
+    @Override
+    public boolean isSideSolid(int x, int y, int z, ForgeDirection side, boolean _default)
+    {
+        if (!columnExists(x, z) || y < 0 || y >= height)
+            return _default;
+
+        return getBlock(x, y, z).isSideSolid(this, x, y, z, side);
+    }
+
+    /**
+     * Same as {@link World#getTopSolidOrLiquidBlock(int, int)}.
+     */
+    public int getTopSolidOrLiquidBlock(int x, int z)
+    {
+        Chunk chunk = chunk(x, z);
+        if (chunk == null)
+            return -1;
+
+        for (int y = chunk.getTopFilledSegment() + 15; y > 0; y--)
+        {
+            Block block = getBlock(x, y, z);
+            if (block.getMaterial().blocksMovement() && block.getMaterial() != Material.leaves && !block.isFoliage(this, x, y, z))
+                return y + 1;
+        }
+
+        return -1;
+    }
+}
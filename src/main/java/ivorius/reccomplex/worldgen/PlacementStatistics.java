@@ -0,0 +1,67 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.worldgen;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how many natural structure placements were tried, and at which check the rejected ones failed.
+ */
+public class PlacementStatistics
+{
+    /**
+     * The checks of a placement, cheapest first.
+     */
+    public enum Stage
+    {
+        LIMITATION,
+        BUDGET,
+        STRUCTURE_HEIGHT,
+        Y_SELECTION,
+        WORLD_HEIGHT,
+        OVERLAP,
+        EVENT
+    }
+
+    private static final AtomicLongArray rejections = new AtomicLongArray(Stage.values().length);
+    private static final AtomicLong accepted = new AtomicLong();
+
+    public static void reject(Stage stage)
+    {
+        rejections.incrementAndGet(stage.ordinal());
+    }
+
+    public static void accept()
+    {
+        accepted.incrementAndGet();
+    }
+
+    public static long rejections(Stage stage)
+    {
+        return rejections.get(stage.ordinal());
+    }
+
+    public static long accepted()
+    {
+        return accepted.get();
+    }
+
+    public static void reset()
+    {
+        for (Stage stage : Stage.values())
+            rejections.set(stage.ordinal(), 0);
+        accepted.set(0);
+    }
+
+    public static String summary()
+    {
+        StringBuilder builder = new StringBuilder("accepted=").append(accepted());
+        for (Stage stage : Stage.values())
+            builder.append(", ").append(stage.name().toLowerCase()).append('=').append(rejections(stage));
+        return builder.toString();
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.worldgen;
+
+import ivorius.reccomplex.RCConfig;
+import ivorius.reccomplex.RecurrentComplex;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldSavedData;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.gen.ChunkProviderServer;
+
+import javax.annotation.Nullable;
+import java.util.Map;
+import java.util.Random;
+import java.util.WeakHashMap;
+
+/**
+ * Walks a region of chunks on world ticks and populates each of them, which generates their structures. Stays within
+ * {@link RCConfig#pregenerationTickBudget}, and pauses while the server falls behind or runs out of memory. The
+ * progress is saved with the world, so an unfinished job resumes after a restart.
+ * <br>
+ * A chunk only populates once its neighbors in positive direction exist, so the terrain of the chunks one past the
+ * maximum edges is generated as well. They aren't populated, and have no structures until a player comes by.
+ */
+public class RegionPregenerator extends WorldSavedData
+{
+    private static final String IDENTIFIER = RecurrentComplex.MODID + "-pregeneration";
+
+    public static final long REPORT_INTERVAL = 30 * 1000;
+
+    private static final Map<World, RegionPregenerator> PREGENERATORS = new WeakHashMap<>();
+
+    private static final WorldGenStructures worldGenStructures = new WorldGenStructures();
+
+    protected boolean running;
+    protected boolean includeExisting;
+
+    protected int minChunkX;
+    protected int minChunkZ;
+    protected int maxChunkX;
+    protected int maxChunkZ;
+
+    protected long next;
+
+    protected long sessionStart = -1;
+    protected long sessionChunks;
+    protected long sessionStructures;
+    protected long lastReport;
+    protected boolean paused;
+
+    public RegionPregenerator(String id)
+    {
+        super(id);
+    }
+
+    public RegionPregenerator()
+    {
+        this(IDENTIFIER);
+    }
+
+    /**
+     * @return The world's pregeneration job, or null if it never had one.
+     */
+    @Nullable
+    public static RegionPregenerator get(World world)
+    {
+        // Missing data isn't cached by the storage, so remember we looked already
+        if (!PREGENERATORS.containsKey(world))
+            PREGENERATORS.put(world, (RegionPregenerator) world.perWorldStorage.loadData(RegionPregenerator.class, IDENTIFIER));
+        return PREGENERATORS.get(world);
+    }
+
+    public static RegionPregenerator getOrCreate(World world)
+    {
+        RegionPregenerator pregenerator = get(world);
+        if (pregenerator == null)
+        {
+            pregenerator = new RegionPregenerator();
+            world.perWorldStorage.setData(pregenerator.mapName, pregenerator);
+            PREGENERATORS.put(world, pregenerator);
+        }
+        return pregenerator;
+    }
+
+    public static void tick(World world)
+    {
+        RegionPregenerator pregenerator = get(world);
+        if (pregenerator != null && pregenerator.running && world instanceof WorldServer)
+            pregenerator.tick((WorldServer) world);
+    }
+
+    public static double meanTickMillis()
+    {
+        long[] tickTimes = MinecraftServer.getServer().tickTimeArray;
+
+        long sum = 0;
+        for (long tickTime : tickTimes)
+            sum += tickTime;
+        return sum / (double) tickTimes.length * 1.0E-6;
+    }
+
+    public static double usedMemory()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        return (runtime.totalMemory() - runtime.freeMemory()) / (double) runtime.maxMemory();
+    }
+
+    /**
+     * Vanilla's population seed, so pregenerated chunks end up like chunks populated by players.
+     */
+    public static Random populationRandom(World world, int chunkX, int chunkZ)
+    {
+        Random random = new Random(world.getSeed());
+        long xSeed = random.nextLong() / 2L * 2L + 1L;
+        long zSeed = random.nextLong() / 2L * 2L + 1L;
+        random.setSeed((long) chunkX * xSeed + (long) chunkZ * zSeed ^ world.getSeed());
+        return random;
+    }
+
+    public void start(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ, boolean includeExisting)
+    {
+        this.minChunkX = Math.min(minChunkX, maxChunkX);
+        this.minChunkZ = Math.min(minChunkZ, maxChunkZ);
+        this.maxChunkX = Math.max(minChunkX, maxChunkX);
+        this.maxChunkZ = Math.max(minChunkZ, maxChunkZ);
+        this.includeExisting = includeExisting;
+        next = 0;
+        running = true;
+        sessionStart = -1;
+
+        markDirty();
+    }
+
+    public void stop(World world)
+    {
+        if (running && world instanceof WorldServer)
+        {
+            int z = currentChunkZ();
+            for (int rowZ = z - 1; rowZ <= z + 1; rowZ++)
+                unloadRow((WorldServer) world, rowZ);
+        }
+
+        running = false;
+        sessionStart = -1;
+        markDirty();
+    }
+
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    public boolean isPaused()
+    {
+        return paused;
+    }
+
+    public long processed()
+    {
+        return next;
+    }
+
+    public long total()
+    {
+        return (long) (maxChunkX - minChunkX + 1) * (maxChunkZ - minChunkZ + 1);
+    }
+
+    protected int width()
+    {
+        return maxChunkX - minChunkX + 1;
+    }
+
+    protected int currentChunkX()
+    {
+        return minChunkX + (int) (next % width());
+    }
+
+    protected int currentChunkZ()
+    {
+        return minChunkZ + (int) (next / width());
+    }
+
+    public double chunksPerSecond()
+    {
+        long millis = System.currentTimeMillis() - sessionStart;
+        return sessionStart >= 0 && millis > 0 ? sessionChunks * 1000.0 / millis : 0;
+    }
+
+    public double structuresPerSecond()
+    {
+        long millis = System.currentTimeMillis() - sessionStart;
+        return sessionStart >= 0 && millis > 0 ? sessionStructures * 1000.0 / millis : 0;
+    }
+
+    protected void tick(WorldServer world)
+    {
+        long now = System.currentTimeMillis();
+        if (sessionStart < 0)
+        {
+            sessionStart = lastReport = now;
+            sessionChunks = 0;
+            sessionStructures = 0;
+        }
+
+        // Let chunks unload and the server catch up before continuing
+        paused = meanTickMillis() > 1000.0 / RCConfig.pregenerationMinTPS || usedMemory() > RCConfig.pregenerationMaxMemory;
+
+        if (!paused)
+        {
+            long end = System.nanoTime() + (long) (RCConfig.pregenerationTickBudget * 1000000L);
+
+            while (next < total() && System.nanoTime() < end)
+            {
+                int chunkX = currentChunkX(), chunkZ = currentChunkZ();
+
+                // Only count what this job placed, not what players caused meanwhile
+                long accepted = PlacementStatistics.accepted();
+                pregenerate(world, chunkX, chunkZ);
+                sessionStructures += PlacementStatistics.accepted() - accepted;
+
+                next++;
+                sessionChunks++;
+                markDirty();
+
+                if (currentChunkZ() != chunkZ)
+                    unloadRow(world, chunkZ - 1);
+            }
+        }
+
+        if (next >= total())
+        {
+            for (int rowZ = maxChunkZ - 1; rowZ <= maxChunkZ + 1; rowZ++)
+                unloadRow(world, rowZ);
+
+            RecurrentComplex.logger.info(String.format("Pregeneration in dimension %d done: %d chunks", world.provider.dimensionId, total()));
+            running = false;
+            sessionStart = -1;
+            markDirty();
+        }
+        else if (now - lastReport >= REPORT_INTERVAL)
+        {
+            lastReport = now;
+            RecurrentComplex.logger.info(String.format("Pregeneration in dimension %d: %d / %d chunks, %.1f chunks/s, %.2f structures/s%s",
+                    world.provider.dimensionId, next, total(), chunksPerSecond(), structuresPerSecond(), paused ? " (paused)" : ""));
+        }
+    }
+
+    protected void pregenerate(WorldServer world, int chunkX, int chunkZ)
+    {
+        ChunkProviderServer provider = world.theChunkProviderServer;
+
+        Chunk chunk = provider.loadChunk(chunkX, chunkZ);
+
+        if (!chunk.isTerrainPopulated)
+        {
+            // A chunk populates once its neighbors in positive direction exist, and then generates its structures.
+            // At the maximum edges, those neighbors are outside the region: they're generated, but not populated.
+            provider.loadChunk(chunkX + 1, chunkZ);
+            provider.loadChunk(chunkX, chunkZ + 1);
+            provider.loadChunk(chunkX + 1, chunkZ + 1);
+        }
+        else if (includeExisting && !StructureGenerationData.get(world).isChunkChecked(chunkX, chunkZ))
+        {
+            // Chunks populated with structures are checked, so this one was populated without them
+            worldGenStructures.generate(populationRandom(world, chunkX, chunkZ), chunkX, chunkZ, world, provider.currentChunkProvider, provider);
+        }
+    }
+
+    protected void unloadRow(WorldServer world, int chunkZ)
+    {
+        ChunkProviderServer provider = world.theChunkProviderServer;
+
+        for (int chunkX = minChunkX - 1; chunkX <= maxChunkX + 1; chunkX++)
+        {
+            if (provider.chunkExists(chunkX, chunkZ) && !isWatched(world, chunkX, chunkZ))
+                provider.unloadChunksIfNotNearSpawn(chunkX, chunkZ);
+        }
+    }
+
+    protected static boolean isWatched(WorldServer world, int chunkX, int chunkZ)
+    {
+        for (Object player : world.playerEntities)
+        {
+            if (world.getPlayerManager().isPlayerWatchingChunk((EntityPlayerMP) player, chunkX, chunkZ))
+                return true;
+        }
+
+        return false;
+    }
+
+    @Override
+    public void readFromNBT(NBTTagCompound compound)
+    {
+        running = compound.getBoolean("running");
+        includeExisting = compound.getBoolean("includeExisting");
+
+        minChunkX = compound.getInteger("minChunkX");
+        minChunkZ = compound.getInteger("minChunkZ");
+        maxChunkX = compound.getInteger("maxChunkX");
+        maxChunkZ = compound.getInteger("maxChunkZ");
+
+        next = compound.getLong("next");
+    }
+
+    @Override
+    public void writeToNBT(NBTTagCompound compound)
+    {
+        compound.setBoolean("running", running);
+        compound.setBoolean("includeExisting", includeExisting);
+
+        compound.setInteger("minChunkX", minChunkX);
+        compound.setInteger("minChunkZ", minChunkZ);
+        compound.setInteger("maxChunkX", maxChunkX);
+        compound.setInteger("maxChunkZ", maxChunkZ);
+
+        compound.setLong("next", next);
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.worldgen;
+
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import ivorius.ivtoolkit.math.IvVecMathHelper;
+import ivorius.reccomplex.RCConfig;
+import ivorius.reccomplex.structures.StructureInfo;
+import ivorius.reccomplex.structures.StructureRegistry;
+import ivorius.reccomplex.structures.generic.GenericYSelector;
+import ivorius.reccomplex.structures.generic.gentypes.NaturalGenerationInfo;
+import net.minecraft.util.ChunkCoordinates;
+import net.minecraft.world.World;
+import net.minecraft.world.WorldServer;
+import net.minecraft.world.biome.BiomeGenBase;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.IChunkProvider;
+import net.minecraft.world.gen.ChunkProviderGenerate;
+import org.apache.commons.lang3.tuple.Pair;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Picks natural structures for a range of chunks the way {@link WorldGenStructures} does, without generating
+ * anything. Only biomes are looked up, so the configured spawn chances and weights can be checked over large areas
+ * quickly. With a heightmap, each chunk's terrain is generated too (but not added to the world), to reject structures
+ * over the void like their y selectors would.
+ * <br>
+ * Everything runs on the calling thread, so callers limit the range (see {@link RCConfig#simulationMaxChunks}).
+ */
+public class SpawnSimulation
+{
+    public static final int MAX_MAP_SIZE = 64;
+    public static final String DENSITY_CHARACTERS = " .:-=+*#%@";
+
+    public static Result simulate(World world, int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ, boolean heightmap)
+    {
+        long start = System.currentTimeMillis();
+
+        int width = maxChunkX - minChunkX + 1, length = maxChunkZ - minChunkZ + 1;
+        int cellSize = Math.max((Math.max(width, length) + MAX_MAP_SIZE - 1) / MAX_MAP_SIZE, 1);
+        Result result = new Result(cellSize, (width + cellSize - 1) / cellSize, (length + cellSize - 1) / cellSize);
+
+        StructureGenerationData data = StructureGenerationData.get(world);
+        StructureRegistry.Snapshot registry = StructureRegistry.INSTANCE.snapshot();
+        TObjectIntMap<String> generatedCounts = new TObjectIntHashMap<>();
+        IChunkProvider generator = heightmap ? terrainGenerator(world) : null;
+        result.heightmap = generator != null;
+
+        if (RCConfig.honorStructureGenerationOption && !world.getWorldInfo().isMapFeaturesEnabled() || !RCConfig.isGenerationEnabled(world.provider))
+            return result.finish(start);
+
+        ChunkCoordinates spawnPos = world.getSpawnPoint();
+        Random random = new Random(world.getSeed());
+        long xSeed = random.nextLong() / 2L * 2L + 1L;
+        long zSeed = random.nextLong() / 2L * 2L + 1L;
+
+        BiomeGenBase[] biomes = new BiomeGenBase[width * 16];
+
+        for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++)
+        {
+            // One biome layer pass per row is a lot cheaper than one per chunk
+            biomes = world.getWorldChunkManager().getBiomeGenAt(biomes, minChunkX * 16, chunkZ * 16, width * 16, 1, false);
+
+            for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++)
+            {
+                result.chunks++;
+
+                BiomeGenBase biome = biomes[(chunkX - minChunkX) * 16];
+                if (biome == null || !RCConfig.isGenerationEnabled(biome))
+                    continue;
+
+                if (world.provider.dimensionId == 0)
+                {
+                    double distToSpawn = IvVecMathHelper.distanceSQ(new double[]{chunkX * 16 + 8, chunkZ * 16 + 8}, new double[]{spawnPos.posX, spawnPos.posZ});
+                    if (distToSpawn < RCConfig.minDistToSpawnForGeneration * RCConfig.minDistToSpawnForGeneration)
+                        continue;
+                }
+
+                random.setSeed((long) chunkX * xSeed + (long) chunkZ * zSeed ^ world.getSeed());
+
+                StructureSelector structureSelector = registry.getStructureSelector(biome, world.provider);
+                int chunkCost = 0;
+                Chunk terrain = null;
+
+                for (Pair<StructureInfo, NaturalGenerationInfo> pair : structureSelector.generatedStructures(random, biome, world.provider))
+                {
+                    NaturalGenerationInfo naturalGenInfo = pair.getRight();
+                    String structureName = registry.structureID(pair.getLeft());
+
+                    int genX = chunkX * 16 + random.nextInt(16);
+                    int genZ = chunkZ * 16 + random.nextInt(16);
+
+                    if (naturalGenInfo.hasLimitations() && !naturalGenInfo.getLimitations().areResolved(data.getInstanceCount(structureName) + generatedCounts.get(structureName)))
+                    {
+                        result.rejected++;
+                        continue;
+                    }
+
+                    int cost = registry.getCost(structureName);
+                    if (RCConfig.chunkGenerationCostBudget > 0 && chunkCost > 0 && chunkCost + cost > RCConfig.chunkGenerationCostBudget)
+                    {
+                        result.rejected++;
+                        continue;
+                    }
+
+                    if (generator != null && dependsOnSurface(naturalGenInfo.ySelector))
+                    {
+                        if (terrain == null)
+                            terrain = generator.provideChunk(chunkX, chunkZ);
+
+                        if (terrain.getHeightValue(genX & 15, genZ & 15) <= GenericYSelector.MIN_DIST_TO_VOID)
+                        {
+                            result.rejected++;
+                            continue;
+                        }
+                    }
+
+                    chunkCost += cost;
+                    generatedCounts.adjustOrPutValue(structureName, 1, 1);
+                    result.add(structureName, (chunkX - minChunkX) / cellSize, (chunkZ - minChunkZ) / cellSize);
+                }
+            }
+        }
+
+        return result.finish(start);
+    }
+
+    /**
+     * The world's own generator also starts villages, strongholds and other map features in every chunk it provides,
+     * and saves them with the world. So terrain is only generated where a separate generator without map features can
+     * be made, which is for vanilla surface terrain.
+     *
+     * @return A generator for the world's terrain that doesn't change the world, or null if there is none.
+     */
+    @Nullable
+    protected static IChunkProvider terrainGenerator(World world)
+    {
+        if (world instanceof WorldServer && ((WorldServer) world).theChunkProviderServer.currentChunkProvider.getClass() == ChunkProviderGenerate.class)
+            return new ChunkProviderGenerate(world, world.getSeed(), false);
+
+        return null;
+    }
+
+    protected static boolean dependsOnSurface(GenericYSelector ySelector)
+    {
+        switch (ySelector.selectionMode)
+        {
+            case SURFACE:
+            case UNDERWATER:
+            case LOWEST_EDGE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public static class Result
+    {
+        public final TObjectIntMap<String> counts = new TObjectIntHashMap<>();
+
+        public final int cellSize;
+        public final int columns;
+        public final int rows;
+        public final int[] density;
+
+        public long chunks;
+        public long rejected;
+        public long millis;
+
+        /**
+         * Whether structures over the void were rejected.
+         */
+        public boolean heightmap;
+
+        public Result(int cellSize, int columns, int rows)
+        {
+            this.cellSize = cellSize;
+            this.columns = columns;
+            this.rows = rows;
+            density = new int[columns * rows];
+        }
+
+        protected void add(String structureID, int column, int row)
+        {
+            counts.adjustOrPutValue(structureID, 1, 1);
+            density[column + row * columns]++;
+        }
+
+        protected Result finish(long start)
+        {
+            millis = System.currentTimeMillis() - start;
+            return this;
+        }
+
+        public long total()
+        {
+            long total = 0;
+            for (int count : counts.values())
+                total += count;
+            return total;
+        }
+
+        /**
+         * @return One line per row of cells, north to south, each character shading a cell relative to the densest one.
+         */
+        public List<String> densityMap()
+        {
+            int max = 0;
+            for (int cell : density)
+                max = Math.max(max, cell);
+
+            List<String> lines = new ArrayList<>();
+            for (int row = 0; row < rows; row++)
+            {
+                StringBuilder line = new StringBuilder(columns);
+                for (int column = 0; column < columns; column++)
+                {
+                    int cell = density[column + row * columns];
+                    int shade = cell == 0 || max == 0 ? 0 : 1 + (cell - 1) * (DENSITY_CHARACTERS.length() - 2) / Math.max(max - 1, 1);
+                    line.append(DENSITY_CHARACTERS.charAt(shade));
+                }
+                lines.add(line.toString());
+            }
+            return lines;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.worldgen;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.gen.structure.StructureBoundingBox;
+
+import java.util.*;
+
+/**
+ * Finds structure entries by position. Each entry is listed in every chunk its bounding box touches, so a query only
+ * looks at the chunks it covers itself. Overlap tests don't allocate.
+ */
+public class StructureEntryIndex
+{
+    protected final TLongObjectMap<List<StructureGenerationData.Entry>> chunks = new TLongObjectHashMap<>();
+
+    public void add(StructureGenerationData.Entry entry)
+    {
+        StructureBoundingBox bb = entry.boundingBox();
+        if (bb == null)
+            return;
+
+        for (int chunkX = bb.minX >> 4; chunkX <= bb.maxX >> 4; chunkX++)
+            for (int chunkZ = bb.minZ >> 4; chunkZ <= bb.maxZ >> 4; chunkZ++)
+            {
+                long key = ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ);
+                List<StructureGenerationData.Entry> entries = chunks.get(key);
+                if (entries == null)
+                    chunks.put(key, entries = new ArrayList<>(1));
+                if (!entries.contains(entry))
+                    entries.add(entry);
+            }
+    }
+
+    public void remove(StructureGenerationData.Entry entry)
+    {
+        StructureBoundingBox bb = entry.boundingBox();
+        if (bb == null)
+            return;
+
+        for (int chunkX = bb.minX >> 4; chunkX <= bb.maxX >> 4; chunkX++)
+            for (int chunkZ = bb.minZ >> 4; chunkZ <= bb.maxZ >> 4; chunkZ++)
+            {
+                long key = ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ);
+                List<StructureGenerationData.Entry> entries = chunks.get(key);
+                if (entries != null && entries.remove(entry) && entries.isEmpty())
+                    chunks.remove(key);
+            }
+    }
+
+    public void clear()
+    {
+        chunks.clear();
+    }
+
+    /**
+     * @return The entries touching the chunk. Not to be modified.
+     */
+    public List<StructureGenerationData.Entry> getEntriesAt(int chunkX, int chunkZ)
+    {
+        List<StructureGenerationData.Entry> entries = chunks.get(ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ));
+        return entries != null ? entries : Collections.emptyList();
+    }
+
+    public boolean hasEntriesAt(int x, int y, int z)
+    {
+        for (StructureGenerationData.Entry entry : getEntriesAt(x >> 4, z >> 4))
+        {
+            if (entry.boundingBox().isVecInside(x, y, z))
+                return true;
+        }
+
+        return false;
+    }
+
+    public boolean hasEntriesAt(StructureBoundingBox boundingBox)
+    {
+        for (int chunkX = boundingBox.minX >> 4; chunkX <= boundingBox.maxX >> 4; chunkX++)
+            for (int chunkZ = boundingBox.minZ >> 4; chunkZ <= boundingBox.maxZ >> 4; chunkZ++)
+            {
+                List<StructureGenerationData.Entry> entries = chunks.get(ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ));
+                if (entries == null)
+                    continue;
+
+                //noinspection ForLoopReplaceableByForEach
+                for (int i = 0; i < entries.size(); i++)
+                {
+                    if (entries.get(i).boundingBox().intersectsWith(boundingBox))
+                        return true;
+                }
+            }
+
+        return false;
+    }
+
+    public Set<StructureGenerationData.Entry> getEntriesAt(int x, int y, int z)
+    {
+        Set<StructureGenerationData.Entry> found = new LinkedHashSet<>();
+        for (StructureGenerationData.Entry entry : getEntriesAt(x >> 4, z >> 4))
+        {
+            if (entry.boundingBox().isVecInside(x, y, z))
+                found.add(entry);
+        }
+        return found;
+    }
+
+    public Set<StructureGenerationData.Entry> getEntriesAt(StructureBoundingBox boundingBox)
+    {
+        Set<StructureGenerationData.Entry> found = new LinkedHashSet<>();
+        for (int chunkX = boundingBox.minX >> 4; chunkX <= boundingBox.maxX >> 4; chunkX++)
+            for (int chunkZ = boundingBox.minZ >> 4; chunkZ <= boundingBox.maxZ >> 4; chunkZ++)
+            {
+                for (StructureGenerationData.Entry entry : getEntriesAt(chunkX, chunkZ))
+                {
+                    if (entry.boundingBox().intersectsWith(boundingBox))
+                        found.add(entry);
+                }
+            }
+        return found;
+    }
+}
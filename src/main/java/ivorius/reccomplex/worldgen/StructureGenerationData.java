@@ -5,39 +5,76 @@
 
 package ivorius.reccomplex.worldgen;
 
-import com.google.common.base.Predicate;
-import com.google.common.collect.*;
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.TObjectIntMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.map.hash.TObjectIntHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
 import ivorius.ivtoolkit.blocks.BlockCoord;
 import ivorius.ivtoolkit.math.AxisAlignedTransform2D;
 import ivorius.reccomplex.RecurrentComplex;
 import ivorius.reccomplex.structures.StructureInfo;
 import ivorius.reccomplex.structures.StructureInfos;
 import ivorius.reccomplex.structures.StructureRegistry;
+import ivorius.reccomplex.structures.generic.transformers.TransformerSeeds;
 import ivorius.reccomplex.utils.StructureBoundingBoxes;
+import net.minecraft.nbt.CompressedStreamTools;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.world.ChunkCoordIntPair;
 import net.minecraft.world.World;
 import net.minecraft.world.WorldSavedData;
+import net.minecraft.world.WorldServer;
 import net.minecraft.world.gen.structure.StructureBoundingBox;
 import net.minecraftforge.common.util.Constants;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Created by lukas on 01.03.15.
+ *
+ * Every dimension has its own data. Entries and checked chunks are stored in one file per region of 32x32 chunks, next
+ * to this data's own file. A region is read the first time something asks about its chunks, and only regions that
+ * changed are written again. Each entry is stored in the region of its lower corner, and referenced from the other
+ * regions it reaches into.
+ * <br>
+ * At most {@link #MAX_LOADED_REGIONS} regions are kept once they're saved; the ones used least recently are dropped
+ * on world ticks, and read again when needed.
  */
 public class StructureGenerationData extends WorldSavedData
 {
     private static final String IDENTIFIER = RecurrentComplex.MODID + "-structuredata";
 
-    protected final Set<ChunkCoordIntPair> checkedChunks = new HashSet<>();
-    protected final Set<ChunkCoordIntPair> checkedChunksFinal = new HashSet<>();
+    public static final int REGION_SHIFT = 5;
+    public static final int MAX_LOADED_REGIONS = 128;
+
+    private static final Map<World, StructureGenerationData> LOADED = new WeakHashMap<>();
+
+    @Nullable
+    protected File directory;
+    protected NBTTagList legacyEntries;
+
+    protected final TLongObjectMap<Region> regions = new TLongObjectHashMap<>();
+    protected long regionAccesses;
 
     protected final Map<UUID, Entry> entryMap = new HashMap<>();
-    protected final SetMultimap<ChunkCoordIntPair, Entry> chunkMap = HashMultimap.create();
-    protected final SetMultimap<String, Entry> instanceMap = HashMultimap.create();
+    protected final StructureEntryIndex index = new StructureEntryIndex();
+    protected final TObjectIntMap<String> instanceCounts = new TObjectIntHashMap<>();
+
+    protected final Set<Entry> scheduledEntries = new LinkedHashSet<>();
+    protected final TLongSet scheduledRegions = new TLongHashSet();
+    protected boolean scheduledRegionsLoaded;
 
     public StructureGenerationData(String id)
     {
@@ -51,41 +88,231 @@ public class StructureGenerationData extends WorldSavedData
 
     public static StructureGenerationData get(World world)
     {
-        StructureGenerationData data = (StructureGenerationData) world.loadItemData(StructureGenerationData.class, IDENTIFIER);
+        // Each dimension checks and generates its own chunks. The overworld's storage is where all dimensions
+        // shared their data before, so only the overworld picks up legacy entries.
+        StructureGenerationData data = (StructureGenerationData) world.perWorldStorage.loadData(StructureGenerationData.class, IDENTIFIER);
         if (data == null)
         {
             data = new StructureGenerationData();
-            world.setItemData(data.mapName, data);
+            world.perWorldStorage.setData(data.mapName, data);
         }
+
+        if (data.directory == null && world instanceof WorldServer)
+            data.setDirectory(new File(new File(((WorldServer) world).getChunkSaveLocation(), "data"), IDENTIFIER));
+
+        LOADED.put(world, data);
+
         return data;
     }
 
-    public Set<Entry> getEntriesAt(ChunkCoordIntPair coords, boolean onlyPartial)
+    public static void tick(World world)
+    {
+        StructureGenerationData data = LOADED.get(world);
+        if (data != null)
+            data.unloadRegions(MAX_LOADED_REGIONS);
+    }
+
+    protected void setDirectory(File directory)
+    {
+        this.directory = directory;
+
+        if (legacyEntries != null)
+        {
+            // Moves everything from the single file into region files on the next save
+            for (int i = 0; i < legacyEntries.tagCount(); i++)
+            {
+                Entry entry = new Entry();
+                entry.readFromNBT(legacyEntries.getCompoundTagAt(i));
+                addEntry(entry);
+            }
+            legacyEntries = null;
+        }
+    }
+
+    protected static long regionKey(int regionX, int regionZ)
+    {
+        return ChunkCoordIntPair.chunkXZ2Int(regionX, regionZ);
+    }
+
+    /**
+     * @return The region, read from its file if it hasn't been yet.
+     */
+    protected Region region(int regionX, int regionZ)
+    {
+        long key = regionKey(regionX, regionZ);
+        Region region = regions.get(key);
+
+        if (region == null)
+        {
+            regions.put(key, region = new Region(regionX, regionZ));
+            region.lastAccess = ++regionAccesses;
+
+            File file = directory != null ? region.file(directory) : null;
+            if (file != null && file.exists())
+            {
+                try (FileInputStream stream = new FileInputStream(file))
+                {
+                    readRegion(region, CompressedStreamTools.readCompressed(stream));
+                }
+                catch (IOException e)
+                {
+                    RecurrentComplex.logger.error("Failed loading structure region " + file, e);
+                }
+            }
+        }
+        else
+            region.lastAccess = ++regionAccesses;
+
+        return region;
+    }
+
+    /**
+     * Drops the regions used least recently until at most max are left. Regions that aren't saved yet, or hold
+     * entries that still have chunks scheduled, are kept. An entry is forgotten once no region holding it is left,
+     * so that reading its region again doesn't add it twice.
+     */
+    public void unloadRegions(int max)
     {
+        if (regions.size() <= max)
+            return;
+
+        List<Region> candidates = new ArrayList<>();
+        for (Region region : regions.valueCollection())
+        {
+            if (canUnload(region))
+                candidates.add(region);
+        }
+        candidates.sort(Comparator.comparingLong(region -> region.lastAccess));
+
+        for (int i = 0; i < candidates.size() && regions.size() > max; i++)
+        {
+            Region region = candidates.get(i);
+            regions.remove(regionKey(region.x, region.z));
+
+            for (Entry entry : region.entries)
+            {
+                if (!isHeldByRegion(entry))
+                    unregister(entry);
+            }
+        }
+    }
+
+    protected boolean canUnload(Region region)
+    {
+        // Without a file to read it from again, it would be lost
+        if (directory == null || region.dirty)
+            return false;
+
+        for (Entry entry : region.entries)
+        {
+            if (entry.hasScheduledChunks() || !entry.isPrepared())
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return Whether any loaded region holds the entry. Doesn't read regions.
+     */
+    protected boolean isHeldByRegion(Entry entry)
+    {
+        StructureBoundingBox boundingBox = entry.boundingBox();
+        int minX, minZ, maxX, maxZ;
+        if (boundingBox != null)
+        {
+            minX = boundingBox.minX >> (4 + REGION_SHIFT);
+            minZ = boundingBox.minZ >> (4 + REGION_SHIFT);
+            maxX = boundingBox.maxX >> (4 + REGION_SHIFT);
+            maxZ = boundingBox.maxZ >> (4 + REGION_SHIFT);
+        }
+        else
+        {
+            minX = maxX = entry.lowerCoord.x >> (4 + REGION_SHIFT);
+            minZ = maxZ = entry.lowerCoord.z >> (4 + REGION_SHIFT);
+        }
+
+        for (int regionX = minX; regionX <= maxX; regionX++)
+            for (int regionZ = minZ; regionZ <= maxZ; regionZ++)
+            {
+                Region region = regions.get(regionKey(regionX, regionZ));
+                if (region != null && region.entries.contains(entry))
+                    return true;
+            }
+
+        return false;
+    }
+
+    protected Region chunkRegion(int chunkX, int chunkZ)
+    {
+        return region(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT);
+    }
+
+    protected Region homeRegion(Entry entry)
+    {
+        return chunkRegion(entry.lowerCoord.x >> 4, entry.lowerCoord.z >> 4);
+    }
+
+    protected void loadRegions(StructureBoundingBox boundingBox)
+    {
+        for (int regionX = boundingBox.minX >> (4 + REGION_SHIFT); regionX <= boundingBox.maxX >> (4 + REGION_SHIFT); regionX++)
+            for (int regionZ = boundingBox.minZ >> (4 + REGION_SHIFT); regionZ <= boundingBox.maxZ >> (4 + REGION_SHIFT); regionZ++)
+                region(regionX, regionZ);
+    }
+
+    protected List<Region> regions(Entry entry)
+    {
+        StructureBoundingBox boundingBox = entry.boundingBox();
+        if (boundingBox == null)
+            return Collections.singletonList(homeRegion(entry));
+
+        List<Region> regions = new ArrayList<>();
+        for (int regionX = boundingBox.minX >> (4 + REGION_SHIFT); regionX <= boundingBox.maxX >> (4 + REGION_SHIFT); regionX++)
+            for (int regionZ = boundingBox.minZ >> (4 + REGION_SHIFT); regionZ <= boundingBox.maxZ >> (4 + REGION_SHIFT); regionZ++)
+                regions.add(region(regionX, regionZ));
+        return regions;
+    }
+
+    /**
+     * @return A copy of the entries touching the chunk, so it may be iterated while entries are added.
+     */
+    public List<Entry> getEntriesAt(int chunkX, int chunkZ, boolean onlyPartial)
+    {
+        chunkRegion(chunkX, chunkZ);
+
+        List<Entry> entries = new ArrayList<>(index.getEntriesAt(chunkX, chunkZ));
         if (onlyPartial)
-            return Sets.filter(chunkMap.get(coords), input -> !input.hasBeenGenerated);
-        return chunkMap.get(coords);
+            entries.removeIf(input -> input.hasBeenGenerated);
+        return entries;
     }
 
-    public Set<Entry> getEntriesAt(final BlockCoord coords)
+    public List<Entry> getEntriesAt(ChunkCoordIntPair coords, boolean onlyPartial)
     {
-        Set<Entry> entries = getEntriesAt(new ChunkCoordIntPair(coords.x >> 4, coords.z >> 4), false);
+        return getEntriesAt(coords.chunkXPos, coords.chunkZPos, onlyPartial);
+    }
 
-        return Sets.filter(entries, input -> {
-            StructureBoundingBox bb = input.boundingBox();
-            return bb != null && bb.isVecInside(coords.x, coords.y, coords.z);
-        });
+    public Set<Entry> getEntriesAt(final BlockCoord coords)
+    {
+        chunkRegion(coords.x >> 4, coords.z >> 4);
+        return index.getEntriesAt(coords.x, coords.y, coords.z);
     }
 
     public Set<Entry> getEntriesAt(final StructureBoundingBox boundingBox)
     {
-        ImmutableSet.Builder<Entry> entries = ImmutableSet.builder();
-        for (ChunkCoordIntPair chunkCoords : StructureBoundingBoxes.rasterize(boundingBox))
-                entries.addAll(Sets.filter(getEntriesAt(chunkCoords, false), input -> {
-                    StructureBoundingBox bb = input.boundingBox();
-                    return bb != null && bb.intersectsWith(boundingBox);
-                }));
-        return entries.build();
+        loadRegions(boundingBox);
+        return index.getEntriesAt(boundingBox);
+    }
+
+    public boolean hasEntriesAt(BlockCoord coords)
+    {
+        chunkRegion(coords.x >> 4, coords.z >> 4);
+        return index.hasEntriesAt(coords.x, coords.y, coords.z);
+    }
+
+    public boolean hasEntriesAt(StructureBoundingBox boundingBox)
+    {
+        loadRegions(boundingBox);
+        return index.hasEntriesAt(boundingBox);
     }
 
     public Set<ChunkCoordIntPair> addCompleteEntry(String structureID, BlockCoord lowerCoord, AxisAlignedTransform2D transform)
@@ -98,76 +325,391 @@ public class StructureGenerationData extends WorldSavedData
         return addEntry(new Entry(UUID.randomUUID(), structureID, lowerCoord, transform, false));
     }
 
+    /**
+     * @param chunks The chunks to generate, as {@link ChunkCoordIntPair#chunkXZ2Int} keys in order.
+     */
+    public Entry addScheduledEntry(String structureID, BlockCoord lowerCoord, AxisAlignedTransform2D transform, Future<NBTTagCompound> preparation, TLongList chunks)
+    {
+        Entry entry = new Entry(UUID.randomUUID(), structureID, lowerCoord, transform, false);
+        entry.preparation = preparation;
+        for (int i = chunks.size() - 1; i >= 0; i--)
+            entry.scheduledChunks.add(chunks.get(i));
+        addEntry(entry);
+        return entry;
+    }
+
     public Set<ChunkCoordIntPair> addEntry(Entry entry)
     {
-        entryMap.put(entry.getUuid(), entry);
+        // Regions must be read first, or they would pick up the entry a second time
+        List<Region> regions = regions(entry);
+
+        register(entry);
+        instanceCounts.adjustOrPutValue(entry.getStructureID(), 1, 1);
 
-        Set<ChunkCoordIntPair> rasterized = entry.rasterize();
-        for (ChunkCoordIntPair coords : rasterized)
-            chunkMap.put(coords, entry);
+        for (Region region : regions)
+        {
+            region.entries.add(entry);
+            region.dirty = true;
+        }
 
-        instanceMap.put(entry.getStructureID(), entry);
+        if (entry.hasScheduledChunks())
+        {
+            Region home = homeRegion(entry);
+            scheduledRegions.add(regionKey(home.x, home.z));
+        }
 
         markDirty();
 
-        return Sets.intersection(checkedChunksFinal, rasterized);
+        StructureBoundingBox boundingBox = entry.boundingBox();
+        if (boundingBox == null)
+            return Collections.emptySet();
+
+        Set<ChunkCoordIntPair> finalChunks = null;
+        for (int chunkX = boundingBox.minX >> 4; chunkX <= boundingBox.maxX >> 4; chunkX++)
+            for (int chunkZ = boundingBox.minZ >> 4; chunkZ <= boundingBox.maxZ >> 4; chunkZ++)
+            {
+                if (chunkRegion(chunkX, chunkZ).isChecked(chunkX, chunkZ, true))
+                {
+                    if (finalChunks == null)
+                        finalChunks = new HashSet<>();
+                    finalChunks.add(new ChunkCoordIntPair(chunkX, chunkZ));
+                }
+            }
+        return finalChunks != null ? finalChunks : Collections.emptySet();
+    }
+
+    protected void register(Entry entry)
+    {
+        entryMap.put(entry.getUuid(), entry);
+        index.add(entry);
+
+        if (entry.hasScheduledChunks())
+            scheduledEntries.add(entry);
     }
 
+    protected void unregister(Entry entry)
+    {
+        entryMap.remove(entry.getUuid());
+        index.remove(entry);
+        scheduledEntries.remove(entry);
+    }
+
+    /**
+     * Call after changing an entry, so that it's saved again.
+     */
+    public void markEntryDirty(Entry entry)
+    {
+        homeRegion(entry).dirty = true;
+        markDirty();
+    }
+
+    /**
+     * @return The entry, if its region has been read.
+     */
     public Entry getEntry(UUID id)
     {
         return entryMap.get(id);
     }
 
-    public Set<Entry> getEntriesByID(String id)
+    /**
+     * @return The number of entries of the structure in all regions, read or not.
+     */
+    public int getInstanceCount(String id)
+    {
+        return instanceCounts.get(id);
+    }
+
+    /**
+     * @return The entry that was scheduled first, is prepared and still has chunks left to generate, or null.
+     */
+    public Entry nextScheduledEntry()
+    {
+        if (!scheduledRegionsLoaded)
+        {
+            scheduledRegionsLoaded = true;
+            for (long key : scheduledRegions.toArray())
+                region((int) key, (int) (key >> 32));
+        }
+
+        Iterator<Entry> iterator = scheduledEntries.iterator();
+        while (iterator.hasNext())
+        {
+            Entry entry = iterator.next();
+            if (!entry.hasScheduledChunks())
+                iterator.remove();
+            else if (entry.isPrepared())
+                return entry;
+        }
+        return null;
+    }
+
+    public boolean isChunkChecked(int chunkX, int chunkZ)
     {
-        return instanceMap.get(id);
+        return chunkRegion(chunkX, chunkZ).isChecked(chunkX, chunkZ, false);
+    }
+
+    public boolean isChunkChecked(ChunkCoordIntPair coords)
+    {
+        return isChunkChecked(coords.chunkXPos, coords.chunkZPos);
+    }
+
+    /**
+     * @return True if the chunk wasn't checked before.
+     */
+    public boolean checkChunk(int chunkX, int chunkZ)
+    {
+        return check(chunkX, chunkZ, false);
     }
 
     public boolean checkChunk(ChunkCoordIntPair coords)
     {
-        if (checkedChunks.contains(coords))
-            return false;
+        return checkChunk(coords.chunkXPos, coords.chunkZPos);
+    }
 
-        checkedChunks.add(coords);
-        markDirty();
-        return true;
+    public boolean checkChunkFinal(int chunkX, int chunkZ)
+    {
+        return check(chunkX, chunkZ, true);
     }
 
     public boolean checkChunkFinal(ChunkCoordIntPair coords)
     {
-        if (checkedChunksFinal.contains(coords))
+        return checkChunkFinal(coords.chunkXPos, coords.chunkZPos);
+    }
+
+    protected boolean check(int chunkX, int chunkZ, boolean isFinal)
+    {
+        Region region = chunkRegion(chunkX, chunkZ);
+        if (region.isChecked(chunkX, chunkZ, isFinal))
             return false;
 
-        checkedChunksFinal.add(coords);
+        region.setChecked(chunkX, chunkZ, isFinal);
         markDirty();
         return true;
     }
 
-    @Override
-    public void readFromNBT(NBTTagCompound compound)
+    protected void readRegion(Region region, NBTTagCompound compound)
     {
-        entryMap.clear();
+        region.checked = readBits(compound.getIntArray("checkedChunks"));
+        region.checkedFinal = readBits(compound.getIntArray("checkedChunksFinal"));
 
         NBTTagList entries = compound.getTagList("entries", Constants.NBT.TAG_COMPOUND);
         for (int i = 0; i < entries.tagCount(); i++)
         {
-            Entry entry = new Entry();
-            entry.readFromNBT(entries.getCompoundTagAt(i));
-            addEntry(entry);
+            NBTTagCompound entryCompound = entries.getCompoundTagAt(i);
+            UUID uuid = new UUID(entryCompound.getLong("UUIDMS"), entryCompound.getLong("UUIDLS"));
+
+            Entry entry = entryMap.get(uuid);
+            if (entry == null)
+            {
+                if (entryCompound.hasKey("home", Constants.NBT.TAG_INT_ARRAY))
+                {
+                    // Only a reference, the entry lives in another region
+                    int[] home = entryCompound.getIntArray("home");
+                    if (home.length == 2)
+                        region(home[0], home[1]);
+                    entry = entryMap.get(uuid);
+                }
+                else
+                {
+                    entry = new Entry();
+                    entry.readFromNBT(entryCompound);
+                    register(entry);
+                }
+            }
+
+            if (entry != null)
+                region.entries.add(entry);
         }
     }
 
-    @Override
-    public void writeToNBT(NBTTagCompound compound)
+    protected NBTTagCompound writeRegion(Region region)
     {
+        NBTTagCompound compound = new NBTTagCompound();
+
+        compound.setIntArray("checkedChunks", writeBits(region.checked));
+        compound.setIntArray("checkedChunksFinal", writeBits(region.checkedFinal));
+
         NBTTagList entries = new NBTTagList();
-        for (Entry entry : entryMap.values())
+        for (Entry entry : region.entries)
         {
             NBTTagCompound entryCompound = new NBTTagCompound();
-            entry.writeToNBT(entryCompound);
+            // Saving iterates the loaded regions, so the home region mustn't be read here
+            int homeX = entry.lowerCoord.x >> (4 + REGION_SHIFT), homeZ = entry.lowerCoord.z >> (4 + REGION_SHIFT);
+
+            if (homeX == region.x && homeZ == region.z)
+                entry.writeToNBT(entryCompound);
+            else
+            {
+                entryCompound.setLong("UUIDMS", entry.getUuid().getMostSignificantBits());
+                entryCompound.setLong("UUIDLS", entry.getUuid().getLeastSignificantBits());
+                entryCompound.setIntArray("home", new int[]{homeX, homeZ});
+            }
+
             entries.appendTag(entryCompound);
         }
         compound.setTag("entries", entries);
+
+        return compound;
+    }
+
+    protected static long[] readBits(int[] ints)
+    {
+        long[] bits = new long[Region.CHUNKS / 64];
+        for (int i = 0; i < bits.length && i * 2 + 1 < ints.length; i++)
+            bits[i] = (ints[i * 2] & 0xffffffffL) | ((long) ints[i * 2 + 1] << 32);
+        return bits;
+    }
+
+    protected static int[] writeBits(long[] bits)
+    {
+        int[] ints = new int[bits.length * 2];
+        for (int i = 0; i < bits.length; i++)
+        {
+            ints[i * 2] = (int) bits[i];
+            ints[i * 2 + 1] = (int) (bits[i] >> 32);
+        }
+        return ints;
+    }
+
+    protected void saveRegions()
+    {
+        if (directory == null)
+            return;
+
+        if (!directory.exists() && !directory.mkdirs())
+        {
+            RecurrentComplex.logger.error("Failed creating structure region directory " + directory);
+            return;
+        }
+
+        for (Region region : regions.valueCollection())
+        {
+            if (!region.dirty)
+                continue;
+
+            File file = region.file(directory);
+            File tempFile = new File(file.getPath() + ".tmp");
+
+            try
+            {
+                try (FileOutputStream stream = new FileOutputStream(tempFile))
+                {
+                    CompressedStreamTools.writeCompressed(writeRegion(region), stream);
+                }
+
+                if (file.exists() && !file.delete() || !tempFile.renameTo(file))
+                    throw new IOException("Failed replacing " + file);
+
+                region.dirty = false;
+            }
+            catch (IOException e)
+            {
+                RecurrentComplex.logger.error("Failed saving structure region " + file, e);
+            }
+        }
+    }
+
+    @Override
+    public void readFromNBT(NBTTagCompound compound)
+    {
+        if (compound.hasKey("entries", Constants.NBT.TAG_LIST))
+        {
+            // Before regions, everything was stored here
+            legacyEntries = compound.getTagList("entries", Constants.NBT.TAG_COMPOUND);
+            return;
+        }
+
+        instanceCounts.clear();
+        NBTTagCompound counts = compound.getCompoundTag("instanceCounts");
+        for (Object key : counts.func_150296_c())
+            instanceCounts.put((String) key, counts.getInteger((String) key));
+
+        scheduledRegions.clear();
+        int[] scheduled = compound.getIntArray("scheduledRegions");
+        for (int i = 0; i + 1 < scheduled.length; i += 2)
+            scheduledRegions.add(regionKey(scheduled[i], scheduled[i + 1]));
+    }
+
+    @Override
+    public void writeToNBT(NBTTagCompound compound)
+    {
+        // Runs on every save while dirty, which is when the regions have to be written too
+        saveRegions();
+
+        NBTTagCompound counts = new NBTTagCompound();
+        instanceCounts.forEachEntry((key, count) -> {
+            counts.setInteger(key, count);
+            return true;
+        });
+        compound.setTag("instanceCounts", counts);
+
+        if (scheduledRegionsLoaded)
+        {
+            scheduledRegions.clear();
+            for (Entry entry : scheduledEntries)
+            {
+                if (entry.hasScheduledChunks())
+                    scheduledRegions.add(regionKey(entry.lowerCoord.x >> (4 + REGION_SHIFT), entry.lowerCoord.z >> (4 + REGION_SHIFT)));
+            }
+        }
+
+        int[] scheduled = new int[scheduledRegions.size() * 2];
+        int index = 0;
+        for (long key : scheduledRegions.toArray())
+        {
+            scheduled[index++] = (int) key;
+            scheduled[index++] = (int) (key >> 32);
+        }
+        compound.setIntArray("scheduledRegions", scheduled);
+    }
+
+    /**
+     * The entries and checked chunks of 32x32 chunks.
+     */
+    protected static class Region
+    {
+        public static final int CHUNKS = 1 << (REGION_SHIFT * 2);
+
+        public final int x;
+        public final int z;
+
+        public long[] checked = new long[CHUNKS / 64];
+        public long[] checkedFinal = new long[CHUNKS / 64];
+
+        public final Set<Entry> entries = new LinkedHashSet<>();
+
+        public boolean dirty;
+        public long lastAccess;
+
+        public Region(int x, int z)
+        {
+            this.x = x;
+            this.z = z;
+        }
+
+        protected static int bit(int chunkX, int chunkZ)
+        {
+            int mask = (1 << REGION_SHIFT) - 1;
+            return ((chunkZ & mask) << REGION_SHIFT) | (chunkX & mask);
+        }
+
+        public boolean isChecked(int chunkX, int chunkZ, boolean isFinal)
+        {
+            int bit = bit(chunkX, chunkZ);
+            return ((isFinal ? checkedFinal : checked)[bit >> 6] & (1L << (bit & 63))) != 0;
+        }
+
+        public void setChecked(int chunkX, int chunkZ, boolean isFinal)
+        {
+            int bit = bit(chunkX, chunkZ);
+            (isFinal ? checkedFinal : checked)[bit >> 6] |= 1L << (bit & 63);
+            dirty = true;
+        }
+
+        public File file(File directory)
+        {
+            return new File(directory, "r." + x + "." + z + ".dat");
+        }
     }
 
     public static class Entry
@@ -180,10 +722,19 @@ public class StructureGenerationData extends WorldSavedData
         protected AxisAlignedTransform2D transform;
 
         protected NBTTagCompound instanceData;
+        protected Future<NBTTagCompound> preparation;
         protected boolean firstTime = true;
 
         protected boolean hasBeenGenerated;
 
+        /**
+         * Chunk keys, last to generate first.
+         */
+        protected final TLongArrayList scheduledChunks = new TLongArrayList(0);
+        protected TransformerSeeds transformerSeeds = new TransformerSeeds();
+
+        protected StructureBoundingBox boundingBox;
+
         public Entry()
         {
         }
@@ -228,6 +779,55 @@ public class StructureGenerationData extends WorldSavedData
             return hasBeenGenerated;
         }
 
+        public boolean isPrepared()
+        {
+            return preparation == null || preparation.isDone();
+        }
+
+        /**
+         * Waits for the instance data if it is still being prepared.
+         */
+        public NBTTagCompound getInstanceData()
+        {
+            if (preparation != null)
+            {
+                try
+                {
+                    instanceData = preparation.get();
+                }
+                catch (InterruptedException | ExecutionException e)
+                {
+                    RecurrentComplex.logger.error("Failed preparing structure '" + structureID + "'", e);
+                }
+                preparation = null;
+            }
+
+            return instanceData;
+        }
+
+        public boolean hasScheduledChunks()
+        {
+            return !scheduledChunks.isEmpty();
+        }
+
+        /**
+         * @return The key of the next chunk to generate, see {@link ChunkCoordIntPair#chunkXZ2Int}.
+         */
+        public long pollScheduledChunk()
+        {
+            return scheduledChunks.removeAt(scheduledChunks.size() - 1);
+        }
+
+        public void clearScheduledChunks()
+        {
+            scheduledChunks.clear();
+        }
+
+        public TransformerSeeds getTransformerSeeds()
+        {
+            return transformerSeeds;
+        }
+
         public void readFromNBT(NBTTagCompound compound)
         {
             uuid = new UUID(compound.getLong("UUIDMS"), compound.getLong("UUIDLS"));
@@ -242,6 +842,13 @@ public class StructureGenerationData extends WorldSavedData
                 instanceData = compound.getCompoundTag("instanceData");
             firstTime = compound.getBoolean("firstTime");
             hasBeenGenerated = compound.getBoolean("hasBeenGenerated");
+
+            scheduledChunks.clear();
+            int[] scheduledChunkCoords = compound.getIntArray("scheduledChunks");
+            for (int i = scheduledChunkCoords.length / 2 * 2 - 2; i >= 0; i -= 2)
+                scheduledChunks.add(ChunkCoordIntPair.chunkXZ2Int(scheduledChunkCoords[i], scheduledChunkCoords[i + 1]));
+
+            transformerSeeds = new TransformerSeeds(compound.getCompoundTag("transformerSeeds"));
         }
 
         public void writeToNBT(NBTTagCompound compound)
@@ -256,10 +863,27 @@ public class StructureGenerationData extends WorldSavedData
 
             BlockCoord.writeCoordToNBT("lowerCoord", lowerCoord, compound);
 
+            NBTTagCompound instanceData = getInstanceData();
             if (instanceData != null)
                 compound.setTag("instanceData", instanceData);
             compound.setBoolean("firstTime", firstTime);
             compound.setBoolean("hasBeenGenerated", hasBeenGenerated);
+
+            if (!scheduledChunks.isEmpty())
+            {
+                int[] scheduledChunkCoords = new int[scheduledChunks.size() * 2];
+                int i = 0;
+                for (int index = scheduledChunks.size() - 1; index >= 0; index--)
+                {
+                    long key = scheduledChunks.get(index);
+                    scheduledChunkCoords[i++] = (int) key;
+                    scheduledChunkCoords[i++] = (int) (key >> 32);
+                }
+                compound.setIntArray("scheduledChunks", scheduledChunkCoords);
+            }
+
+            if (!transformerSeeds.isEmpty())
+                compound.setTag("transformerSeeds", transformerSeeds.writeToNBT());
         }
 
         public Set<ChunkCoordIntPair> rasterize()
@@ -267,13 +891,19 @@ public class StructureGenerationData extends WorldSavedData
             return StructureBoundingBoxes.rasterize(boundingBox());
         }
 
+        /**
+         * @return The bounding box, worked out once the structure is known and then kept.
+         */
         public StructureBoundingBox boundingBox()
         {
-            StructureInfo structureInfo = StructureRegistry.INSTANCE.getStructure(structureID);
-
-            return structureInfo != null
-                    ? StructureInfos.structureBoundingBox(lowerCoord, StructureInfos.structureSize(structureInfo, transform))
-                    : null;
+            if (boundingBox == null)
+            {
+                StructureInfo structureInfo = StructureRegistry.INSTANCE.getStructure(structureID);
+                if (structureInfo != null)
+                    boundingBox = StructureInfos.structureBoundingBox(lowerCoord, StructureInfos.structureSize(structureInfo, transform));
+            }
+
+            return boundingBox;
         }
 
         @Override
@@ -0,0 +1,89 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.worldgen;
+
+import ivorius.reccomplex.structures.StructureInfo;
+import ivorius.reccomplex.structures.StructureInfos;
+import ivorius.reccomplex.structures.StructureRegistry;
+import net.minecraft.world.World;
+import net.minecraft.world.gen.structure.StructureBoundingBox;
+
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates scheduled structures one chunk at a time on world ticks, until the tick's time or cost budget is used up.
+ */
+public class StructureGenerationScheduler
+{
+    /**
+     * @param budgetMillis The time to spend at most, or 0 to only respect the {@link GenerationBudget}.
+     */
+    public static void tick(World world, float budgetMillis)
+    {
+        StructureGenerationData data = StructureGenerationData.get(world);
+        GenerationBudget budget = GenerationBudget.get(world);
+        long end = System.nanoTime() + (long) (budgetMillis * 1000000);
+
+        StructureGenerationData.Entry entry;
+        while ((budgetMillis <= 0 || System.nanoTime() < end) && (entry = data.nextScheduledEntry()) != null)
+        {
+            int cost = chunkCost(entry);
+            if (!budget.fits(world, cost))
+                break;
+
+            generateNextChunk(world, data, entry);
+            budget.consume(world, cost);
+        }
+    }
+
+    /**
+     * The structure's estimated cost, spread evenly over its chunks.
+     */
+    protected static int chunkCost(StructureGenerationData.Entry entry)
+    {
+        StructureBoundingBox boundingBox = entry.boundingBox();
+        if (boundingBox == null)
+            return 0;
+
+        int chunks = ((boundingBox.maxX >> 4) - (boundingBox.minX >> 4) + 1) * ((boundingBox.maxZ >> 4) - (boundingBox.minZ >> 4) + 1);
+        return StructureRegistry.INSTANCE.getCost(entry.getStructureID()) / chunks;
+    }
+
+    public static void generateScheduledChunks(World world, StructureGenerationData.Entry entry)
+    {
+        StructureGenerationData data = StructureGenerationData.get(world);
+        while (entry.hasScheduledChunks())
+            generateNextChunk(world, data, entry);
+    }
+
+    /**
+     * The random a chunk of the structure generates with, so that it doesn't depend on when the chunk's turn comes.
+     */
+    protected static Random chunkRandom(StructureGenerationData.Entry entry, long chunkKey)
+    {
+        UUID uuid = entry.getUuid();
+        return new Random(uuid.getMostSignificantBits() ^ uuid.getLeastSignificantBits() * 31 ^ chunkKey * 341873128712L);
+    }
+
+    protected static void generateNextChunk(World world, StructureGenerationData data, StructureGenerationData.Entry entry)
+    {
+        long chunkKey = entry.pollScheduledChunk();
+        int chunkX = (int) chunkKey, chunkZ = (int) (chunkKey >> 32);
+        StructureInfo structureInfo = StructureRegistry.INSTANCE.getStructure(entry.getStructureID());
+
+        if (structureInfo != null)
+        {
+            entry.transformerSeeds.markGenerated(chunkX, chunkZ);
+            StructureGenerator.partially(structureInfo, world, chunkRandom(entry, chunkKey), entry.lowerCoord, entry.transform, StructureInfos.chunkBoundingBox(chunkX, chunkZ), 0, entry.getStructureID(), entry.getInstanceData(), entry.firstTime, entry.transformerSeeds);
+            entry.firstTime = false;
+        }
+        else
+            entry.clearScheduledChunks();
+
+        data.markEntryDirty(entry);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.worldgen;
+
+import ivorius.ivtoolkit.blocks.BlockCoord;
+import ivorius.ivtoolkit.math.AxisAlignedTransform2D;
+import net.minecraft.world.gen.structure.StructureBoundingBox;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * Runs the structures nested in a structure (by generating tile entities, mazes and structure generators) one after
+ * another from a queue, breadth first, instead of recursing into each of them from its parent. However deep the
+ * nesting goes, the call stack stays flat, and a generation requested twice in one run only happens once.
+ */
+public class StructureGenerationTasks
+{
+    private static Run current;
+
+    /**
+     * Runs the generation, and then every nested generation it requests through {@link #enqueue}.
+     */
+    public static void run(Runnable generation)
+    {
+        // Cascading chunk population may start an unrelated generation while one is running
+        Run previous = current;
+        current = new Run();
+
+        try
+        {
+            generation.run();
+
+            Runnable task;
+            while ((task = current.tasks.poll()) != null)
+                task.run();
+        }
+        finally
+        {
+            current = previous;
+        }
+    }
+
+    /**
+     * @return False if no generation is running, in which case the caller should generate right away.
+     */
+    public static boolean enqueue(String structureID, BlockCoord coord, AxisAlignedTransform2D transform, @Nullable StructureBoundingBox generationBB, Runnable generation)
+    {
+        if (current == null)
+            return false;
+
+        List<Object> key = Arrays.asList(structureID, coord.x, coord.y, coord.z, transform.getRotation(), transform.isMirrorX(),
+                generationBB != null ? Arrays.asList(generationBB.minX, generationBB.minY, generationBB.minZ, generationBB.maxX, generationBB.maxY, generationBB.maxZ) : null);
+        if (current.requested.add(key))
+            current.tasks.add(generation);
+
+        return true;
+    }
+
+    protected static class Run
+    {
+        public final Deque<Runnable> tasks = new ArrayDeque<>();
+        public final Set<List<Object>> requested = new HashSet<>();
+    }
+}
@@ -5,6 +5,8 @@
 
 package ivorius.reccomplex.worldgen;
 
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TLongArrayList;
 import ivorius.ivtoolkit.blocks.BlockCoord;
 import ivorius.ivtoolkit.math.AxisAlignedTransform2D;
 import ivorius.reccomplex.RCConfig;
@@ -13,14 +15,17 @@ import ivorius.reccomplex.events.RCEventBus;
 import ivorius.reccomplex.events.StructureGenerationEvent;
 import ivorius.reccomplex.events.StructureGenerationEventLite;
 import ivorius.reccomplex.structures.*;
+import ivorius.reccomplex.structures.generic.transformers.TransformerSeeds;
 import ivorius.reccomplex.utils.NBTStorable;
 import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.world.ChunkCoordIntPair;
 import net.minecraft.world.World;
 import net.minecraft.world.gen.structure.StructureBoundingBox;
 import net.minecraftforge.common.MinecraftForge;
 
 import javax.annotation.Nullable;
-import java.util.Random;
+import java.util.*;
+import java.util.concurrent.Future;
 
 /**
  * Created by lukas on 24.05.14.
@@ -30,15 +35,40 @@ public class StructureGenerator
     public static final int MIN_DIST_TO_LIMIT = 1;
 
     public static <I extends NBTStorable> void partially(StructureInfo<I> structureInfo, World world, Random random, BlockCoord coord, AxisAlignedTransform2D transform, @Nullable StructureBoundingBox generationBB, int layer, String structureID, NBTTagCompound instanceData, boolean firstTime)
+    {
+        partially(structureInfo, world, random, coord, transform, generationBB, layer, structureID, instanceData, firstTime, null);
+    }
+
+    public static <I extends NBTStorable> void partially(StructureInfo<I> structureInfo, World world, Random random, BlockCoord coord, AxisAlignedTransform2D transform, @Nullable StructureBoundingBox generationBB, int layer, String structureID, NBTTagCompound instanceData, boolean firstTime, @Nullable TransformerSeeds transformerSeeds)
     {
         partially(structureInfo, world, random, coord, transform, generationBB, layer, structureID,
                 structureInfo.loadInstanceData(new StructureLoadContext(transform, StructureInfos.structureBoundingBox(coord, StructureInfos.structureSize(structureInfo, transform)), false), instanceData),
-                firstTime);
+                firstTime, transformerSeeds);
     }
 
     public static <I extends NBTStorable> void partially(StructureInfo<I> structureInfo, World world, Random random, BlockCoord coord, AxisAlignedTransform2D transform, @Nullable StructureBoundingBox generationBB, int layer, String structureID, I instanceData, boolean firstTime)
+    {
+        partially(structureInfo, world, random, coord, transform, generationBB, layer, structureID, instanceData, firstTime, null);
+    }
+
+    /**
+     * Nested generations (layer above 0) requested while another one runs are queued up in
+     * {@link StructureGenerationTasks} and happen after their parent.
+     *
+     * @param transformerSeeds Where transformers keep work outside generationBB, see {@link TransformerSeeds}. Without it, that work is lost.
+     */
+    public static <I extends NBTStorable> void partially(StructureInfo<I> structureInfo, World world, Random random, BlockCoord coord, AxisAlignedTransform2D transform, @Nullable StructureBoundingBox generationBB, int layer, String structureID, I instanceData, boolean firstTime, @Nullable TransformerSeeds transformerSeeds)
+    {
+        Runnable generation = () -> generatePartially(structureInfo, world, random, coord, transform, generationBB, layer, structureID, instanceData, firstTime, transformerSeeds);
+
+        if (layer <= 0 || !StructureGenerationTasks.enqueue(structureID, coord, transform, generationBB, generation))
+            StructureGenerationTasks.run(generation);
+    }
+
+    private static <I extends NBTStorable> void generatePartially(StructureInfo<I> structureInfo, World world, Random random, BlockCoord coord, AxisAlignedTransform2D transform, @Nullable StructureBoundingBox generationBB, int layer, String structureID, I instanceData, boolean firstTime, @Nullable TransformerSeeds transformerSeeds)
     {
         StructureSpawnContext structureSpawnContext = StructureSpawnContext.partial(world, random, transform, coord, structureInfo, generationBB, layer, false, firstTime);
+        structureSpawnContext.deferSeedsTo(transformerSeeds);
         int[] coordInts = coordInts(structureSpawnContext.boundingBox);
         int[] sizeInts = sizeInts(structureSpawnContext.boundingBox);
 
@@ -48,7 +78,15 @@ public class StructureGenerator
             MinecraftForge.EVENT_BUS.post(new StructureGenerationEventLite.Pre(world, structureID, coordInts, sizeInts, layer));
         }
 
-        structureInfo.generate(structureSpawnContext, instanceData);
+        SurfaceHeightCache.begin(world);
+        try
+        {
+            structureInfo.generate(structureSpawnContext, instanceData);
+        }
+        finally
+        {
+            SurfaceHeightCache.end(world);
+        }
 
         if (firstTime)
         {
@@ -61,23 +99,172 @@ public class StructureGenerator
 
     public static <I extends NBTStorable> void directly(StructureInfo<I> structureInfo, StructureSpawnContext context)
     {
-        structureInfo.generate(context, structureInfo.prepareInstanceData(new StructurePrepareContext(context.random, context.transform, context.boundingBox, context.generateAsSource)));
+        I instanceData = structureInfo.prepareInstanceData(new StructurePrepareContext(context.random, context.transform, context.boundingBox, context.generateAsSource));
+        StructureGenerationTasks.run(() -> {
+            SurfaceHeightCache.begin(context.world);
+            try
+            {
+                structureInfo.generate(context, instanceData);
+            }
+            finally
+            {
+                SurfaceHeightCache.end(context.world);
+            }
+        });
     }
 
-    public static int randomInstantly(World world, Random random, StructureInfo info, @Nullable YSelector ySelector, int x, int z, boolean suggest, String structureName)
+    private static AxisAlignedTransform2D randomTransform(Random random, StructureInfo info)
     {
-        AxisAlignedTransform2D transform = AxisAlignedTransform2D.from(info.isRotatable() ? random.nextInt(4) : 0, info.isMirrorable() && random.nextBoolean());
+        return AxisAlignedTransform2D.from(info.isRotatable() ? random.nextInt(4) : 0, info.isMirrorable() && random.nextBoolean());
+    }
 
+    private static BlockCoord randomCoord(World world, Random random, StructureInfo info, @Nullable YSelector ySelector, AxisAlignedTransform2D transform, int x, int z)
+    {
         int[] size = StructureInfos.structureSize(info, transform);
 
         int genX = x - size[0] / 2;
         int genZ = z - size[2] / 2;
         int genY = ySelector != null ? ySelector.selectY(world, random, StructureInfos.structureBoundingBox(new BlockCoord(genX, 0, genZ), size)) : world.getHeightValue(x, z);
+        return new BlockCoord(genX, genY, genZ);
+    }
+
+    /**
+     * Picks a natural structure's position, running the cheapest checks first. The Y selection, which may scan every
+     * column of the footprint, only runs for placements that pass every check not depending on it.
+     *
+     * @return The position, or null if the placement was rejected.
+     */
+    @Nullable
+    private static BlockCoord suggestedCoord(World world, Random random, StructureInfo info, @Nullable YSelector ySelector, AxisAlignedTransform2D transform, int x, int z, String structureID)
+    {
+        int[] size = StructureInfos.structureSize(info, transform);
+        if (size[1] > world.getHeight() - 1 - MIN_DIST_TO_LIMIT * 2)
+            return reject(PlacementStatistics.Stage.STRUCTURE_HEIGHT, structureID, x, z);
+
+        int genX = x - size[0] / 2;
+        int genZ = z - size[2] / 2;
+
+        int genY = ySelector != null ? ySelector.selectY(world, random, StructureInfos.structureBoundingBox(new BlockCoord(genX, 0, genZ), size)) : world.getHeightValue(x, z);
+        if (genY == YSelector.DONT_GENERATE)
+            return reject(PlacementStatistics.Stage.Y_SELECTION, structureID, x, z);
+        if (genY < MIN_DIST_TO_LIMIT || genY + size[1] > world.getHeight() - 1 - MIN_DIST_TO_LIMIT)
+            return reject(PlacementStatistics.Stage.WORLD_HEIGHT, structureID, x, z);
+
         BlockCoord coord = new BlockCoord(genX, genY, genZ);
+        StructureSpawnContext context = StructureSpawnContext.complete(world, random, transform, coord, info, 0, false);
+
+        if (RCConfig.avoidOverlappingGeneration && StructureGenerationData.get(world).hasEntriesAt(context.boundingBox))
+            return reject(PlacementStatistics.Stage.OVERLAP, structureID, x, z);
+
+        if (RCEventBus.INSTANCE.post(new StructureGenerationEvent.Suggest(info, context))
+                || MinecraftForge.EVENT_BUS.post(new StructureGenerationEventLite.Suggest(world, structureID, coordInts(context.boundingBox), size, 0)))
+            return reject(PlacementStatistics.Stage.EVENT, structureID, x, z);
 
-        instantly(info, world, random, coord, transform, 0, suggest, structureName, false);
+        PlacementStatistics.accept();
+        return coord;
+    }
+
+    private static BlockCoord reject(PlacementStatistics.Stage stage, String structureID, int x, int z)
+    {
+        PlacementStatistics.reject(stage);
+        RecurrentComplex.logger.trace(String.format("Canceled structure '%s' generation at x = %d, z = %d (%s)", name(structureID), x, z, stage));
+        return null;
+    }
+
+    public static int randomInstantly(World world, Random random, StructureInfo info, @Nullable YSelector ySelector, int x, int z, boolean suggest, String structureName)
+    {
+        AxisAlignedTransform2D transform = randomTransform(random, info);
+
+        if (suggest)
+        {
+            BlockCoord coord = suggestedCoord(world, random, info, ySelector, transform, x, z, structureName);
+            if (coord == null)
+                return YSelector.DONT_GENERATE;
+
+            instantly(info, world, random, coord, transform, 0, false, structureName, false);
+            return coord.y;
+        }
+
+        BlockCoord coord = randomCoord(world, random, info, ySelector, transform, x, z);
+        instantly(info, world, random, coord, transform, 0, false, structureName, false);
+        return coord.y;
+    }
+
+    public static int randomScheduled(World world, Random random, StructureInfo info, @Nullable YSelector ySelector, int x, int z, String structureName)
+    {
+        AxisAlignedTransform2D transform = randomTransform(random, info);
+        BlockCoord coord = suggestedCoord(world, random, info, ySelector, transform, x, z, structureName);
+        if (coord == null)
+            return YSelector.DONT_GENERATE;
+
+        scheduled(info, world, random, coord, transform, structureName);
+        return coord.y;
+    }
+
+    /**
+     * Generates the structure in every chunk that is already populated, and leaves the rest to their own population,
+     * so that generation never causes new chunks to be generated.
+     */
+    public static int randomChunkwise(World world, Random random, StructureInfo info, @Nullable YSelector ySelector, int x, int z, boolean suggest, String structureName)
+    {
+        AxisAlignedTransform2D transform = randomTransform(random, info);
+        BlockCoord coord = suggest
+                ? suggestedCoord(world, random, info, ySelector, transform, x, z, structureName)
+                : randomCoord(world, random, info, ySelector, transform, x, z);
+        if (coord == null)
+            return YSelector.DONT_GENERATE;
+
+        StructureGenerationData.Entry entry = scheduled(info, world, random, coord, transform, structureName);
+        if (entry != null)
+            StructureGenerationScheduler.generateScheduledChunks(world, entry);
+        return coord.y;
+    }
+
+    private static boolean isSuggestionValid(StructureInfo structureInfo, StructureSpawnContext context, BlockCoord coord, int layer, String structureID)
+    {
+        World world = context.world;
+        int[] size = sizeInts(context.boundingBox);
+        int[] coordInts = coordInts(context.boundingBox);
+
+        return coord.y >= MIN_DIST_TO_LIMIT && coord.y + size[1] <= world.getHeight() - 1 - MIN_DIST_TO_LIMIT
+                && (!RCConfig.avoidOverlappingGeneration || !StructureGenerationData.get(world).hasEntriesAt(context.boundingBox))
+                && !RCEventBus.INSTANCE.post(new StructureGenerationEvent.Suggest(structureInfo, context))
+                && !MinecraftForge.EVENT_BUS.post(new StructureGenerationEventLite.Suggest(world, structureID, coordInts, size, layer));
+    }
+
+    /**
+     * Leaves generation of the already checked placement to {@link StructureGenerationScheduler}, chunk by chunk.
+     * Chunks that aren't populated yet generate their part on population, like any other partially generated structure.
+     */
+    @Nullable
+    public static <I extends NBTStorable> StructureGenerationData.Entry scheduled(StructureInfo<I> structureInfo, World world, Random random, BlockCoord coord, AxisAlignedTransform2D transform, String structureID)
+    {
+        StructureSpawnContext structureSpawnContext = StructureSpawnContext.complete(world, random, transform, coord, structureInfo, 0, false);
+
+        if (structureID != null)
+        {
+            // Preparation gets its own random so it may run on another thread without changing the result
+            Future<NBTTagCompound> preparation = StructurePreparation.prepare(structureInfo, new StructurePrepareContext(new Random(random.nextLong()), transform, structureSpawnContext.boundingBox, false));
+
+            StructureBoundingBox boundingBox = structureSpawnContext.boundingBox;
+            TLongList populatedChunks = new TLongArrayList();
+            for (int chunkX = boundingBox.minX >> 4; chunkX <= boundingBox.maxX >> 4; chunkX++)
+                for (int chunkZ = boundingBox.minZ >> 4; chunkZ <= boundingBox.maxZ >> 4; chunkZ++)
+                {
+                    if (world.getChunkProvider().chunkExists(chunkX, chunkZ) && world.getChunkFromChunkCoords(chunkX, chunkZ).isTerrainPopulated)
+                        populatedChunks.add(ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ));
+                }
+
+            StructureGenerationData.Entry entry = StructureGenerationData.get(world).addScheduledEntry(structureID, coord, transform, preparation, populatedChunks);
+
+            RecurrentComplex.logger.trace(String.format("Scheduled structure '%s' in %s", name(structureID), structureSpawnContext.boundingBox));
+
+            return entry;
+        }
+        else
+            RecurrentComplex.logger.trace(String.format("Canceled structure '%s' generation in %s", structureID, structureSpawnContext.boundingBox));
 
-        return genY;
+        return null;
     }
 
     public static <I extends NBTStorable> boolean instantly(StructureInfo<I> structureInfo, World world, Random random, BlockCoord coord, AxisAlignedTransform2D transform, int layer, boolean suggest, String structureID, boolean asSource)
@@ -86,17 +273,13 @@ public class StructureGenerator
         int[] size = sizeInts(structureSpawnContext.boundingBox);
         int[] coordInts = coordInts(structureSpawnContext.boundingBox);
 
-        if (!suggest || (
-                coord.y >= MIN_DIST_TO_LIMIT && coord.y + size[1] <= world.getHeight() - 1 - MIN_DIST_TO_LIMIT
-                        && (!RCConfig.avoidOverlappingGeneration || StructureGenerationData.get(world).getEntriesAt(structureSpawnContext.boundingBox).size() == 0)
-                        && !RCEventBus.INSTANCE.post(new StructureGenerationEvent.Suggest(structureInfo, structureSpawnContext))
-                        && !MinecraftForge.EVENT_BUS.post(new StructureGenerationEventLite.Suggest(world, structureID, coordInts, size, layer))
-        ))
+        if (!suggest || isSuggestionValid(structureInfo, structureSpawnContext, coord, layer, structureID))
         {
             RCEventBus.INSTANCE.post(new StructureGenerationEvent.Pre(structureInfo, structureSpawnContext));
             MinecraftForge.EVENT_BUS.post(new StructureGenerationEventLite.Pre(world, structureID, coordInts, size, layer));
 
-            structureInfo.generate(structureSpawnContext, structureInfo.prepareInstanceData(new StructurePrepareContext(random, transform, structureSpawnContext.boundingBox, structureSpawnContext.generateAsSource)));
+            I instanceData = structureInfo.prepareInstanceData(new StructurePrepareContext(random, transform, structureSpawnContext.boundingBox, structureSpawnContext.generateAsSource));
+            StructureGenerationTasks.run(() -> structureInfo.generate(structureSpawnContext, instanceData));
 
             RecurrentComplex.logger.trace(String.format("Generated structure '%s' in %s", name(structureID), structureSpawnContext.boundingBox));
 
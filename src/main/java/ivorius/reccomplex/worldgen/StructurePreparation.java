@@ -0,0 +1,59 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.worldgen;
+
+import ivorius.reccomplex.RCConfig;
+import ivorius.reccomplex.structures.StructureInfo;
+import ivorius.reccomplex.structures.StructurePrepareContext;
+import net.minecraft.nbt.NBTBase;
+import net.minecraft.nbt.NBTTagCompound;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prepares structure instance data on worker threads. Preparation doesn't touch the world and only draws from the
+ * context's random, so the result doesn't depend on which thread runs it, or when.
+ */
+public class StructurePreparation
+{
+    private static ExecutorService executor;
+    private static int executorThreads;
+
+    private static synchronized ExecutorService executor(int threads)
+    {
+        if (executor == null || executorThreads != threads)
+        {
+            if (executor != null)
+                executor.shutdown();
+
+            AtomicInteger threadIndex = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "RC Structure Preparation #" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            executorThreads = threads;
+        }
+
+        return executor;
+    }
+
+    public static Future<NBTTagCompound> prepare(StructureInfo<?> structureInfo, StructurePrepareContext context)
+    {
+        Callable<NBTTagCompound> task = () -> {
+            NBTBase instanceData = structureInfo.prepareInstanceData(context).writeToNBT();
+            return instanceData instanceof NBTTagCompound ? (NBTTagCompound) instanceData : null;
+        };
+
+        if (RCConfig.structurePreparationThreads > 0)
+            return executor(RCConfig.structurePreparationThreads).submit(task);
+
+        FutureTask<NBTTagCompound> future = new FutureTask<>(task);
+        future.run();
+        return future;
+    }
+}
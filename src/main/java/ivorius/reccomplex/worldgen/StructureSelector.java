@@ -96,11 +96,15 @@ public class StructureSelector
     }
 
     public List<Pair<StructureInfo, NaturalGenerationInfo>> generatedStructures(Random random, int chunkX, int chunkZ, World world, IChunkProvider chunkGenerator, IChunkProvider chunkProvider)
+    {
+        return generatedStructures(random, world.getBiomeGenForCoords(chunkX * 16, chunkZ * 16), world.provider);
+    }
+
+    public List<Pair<StructureInfo, NaturalGenerationInfo>> generatedStructures(Random random, BiomeGenBase biome, WorldProvider provider)
     {
         List<Pair<StructureInfo, NaturalGenerationInfo>> infos = new ArrayList<>();
-        BiomeGenBase biome = world.getBiomeGenForCoords(chunkX * 16, chunkZ * 16);
 
-        weightedStructureInfos.keySet().stream().filter(category -> random.nextFloat() < generationChance(category, biome, world.provider)).forEach(category -> infos.add(WeightedSelector.select(random, weightedStructureInfos.get(category))));
+        weightedStructureInfos.keySet().stream().filter(category -> random.nextFloat() < generationChance(category, biome, provider)).forEach(category -> infos.add(WeightedSelector.select(random, weightedStructureInfos.get(category))));
 
         return infos;
     }
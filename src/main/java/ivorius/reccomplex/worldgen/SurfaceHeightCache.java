@@ -0,0 +1,228 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.worldgen;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import ivorius.reccomplex.structures.generic.GenericYSelector;
+import net.minecraft.block.Block;
+import net.minecraft.init.Blocks;
+import net.minecraft.world.ChunkCoordIntPair;
+import net.minecraft.world.World;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Surface heights of columns, computed on first use. Heights are only kept while a generation is running (between
+ * {@link #begin} and {@link #end}), since nothing reports changes made by others in the meantime. Columns are updated
+ * or forgotten when a structure sets a block in them.
+ */
+public class SurfaceHeightCache
+{
+    private static final Map<World, SurfaceHeightCache> CACHES = new WeakHashMap<>();
+
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+
+    protected final World world;
+    protected final TLongObjectMap<ChunkHeights> chunks = new TLongObjectHashMap<>();
+
+    protected int generations;
+
+    public SurfaceHeightCache(World world)
+    {
+        this.world = world;
+    }
+
+    public static SurfaceHeightCache get(World world)
+    {
+        SurfaceHeightCache cache = CACHES.get(world);
+        if (cache == null)
+            CACHES.put(world, cache = new SurfaceHeightCache(world));
+        return cache;
+    }
+
+    /**
+     * Starts keeping heights until the matching {@link #end}. Generations may nest.
+     */
+    public static void begin(World world)
+    {
+        get(world).generations++;
+    }
+
+    /**
+     * Forgets all heights, also those of enclosing generations: a nested generation may have been started by chunk
+     * population, which changes the world without reporting it.
+     */
+    public static void end(World world)
+    {
+        SurfaceHeightCache cache = CACHES.get(world);
+        if (cache != null)
+        {
+            cache.generations = Math.max(0, cache.generations - 1);
+            cache.chunks.clear();
+        }
+    }
+
+    /**
+     * Called when the block at the position changed to block.
+     */
+    public static void update(World world, int x, int y, int z, Block block)
+    {
+        SurfaceHeightCache cache = CACHES.get(world);
+        if (cache != null)
+        {
+            ChunkHeights heights = cache.chunks.get(ChunkCoordIntPair.chunkXZ2Int(x >> 4, z >> 4));
+            if (heights != null)
+                heights.update((z & 15) << 4 | (x & 15), y, block);
+        }
+    }
+
+    public static void invalidate(World world, int x, int z)
+    {
+        SurfaceHeightCache cache = CACHES.get(world);
+        if (cache != null)
+        {
+            ChunkHeights heights = cache.chunks.get(ChunkCoordIntPair.chunkXZ2Int(x >> 4, z >> 4));
+            if (heights != null)
+                heights.invalidate((z & 15) << 4 | (x & 15));
+        }
+    }
+
+    protected ChunkHeights heights(int x, int z)
+    {
+        long key = ChunkCoordIntPair.chunkXZ2Int(x >> 4, z >> 4);
+        ChunkHeights heights = chunks.get(key);
+        if (heights == null)
+            chunks.put(key, heights = new ChunkHeights());
+        return heights;
+    }
+
+    /**
+     * @see GenericYSelector#surfaceHeight(World, int, int)
+     */
+    public int surface(int x, int z)
+    {
+        if (generations == 0)
+            return GenericYSelector.surfaceHeight(world, x, z);
+
+        int[] surface = heights(x, z).surface;
+        int index = (z & 15) << 4 | (x & 15);
+        if (surface[index] == UNKNOWN)
+            surface[index] = GenericYSelector.surfaceHeight(world, x, z);
+        return surface[index];
+    }
+
+    /**
+     * @see GenericYSelector#surfaceHeightUnderwater(World, int, int)
+     */
+    public int underwater(int x, int z)
+    {
+        if (generations == 0)
+            return GenericYSelector.surfaceHeightUnderwater(world, x, z);
+
+        int[] underwater = heights(x, z).underwater;
+        int index = (z & 15) << 4 | (x & 15);
+        if (underwater[index] == UNKNOWN)
+            underwater[index] = GenericYSelector.surfaceHeightUnderwater(world, x, z);
+        return underwater[index];
+    }
+
+    /**
+     * @return The highest y of the block in the column, or -1 if there is none.
+     */
+    public int highest(int x, int z, Block block)
+    {
+        if (generations == 0)
+            return findHighest(x, z, block);
+
+        ChunkHeights heights = heights(x, z);
+        if (heights.highestBlock != block)
+        {
+            Arrays.fill(heights.highest, UNKNOWN);
+            heights.highestBlock = block;
+        }
+
+        int index = (z & 15) << 4 | (x & 15);
+        if (heights.highest[index] == UNKNOWN)
+            heights.highest[index] = findHighest(x, z, block);
+        return heights.highest[index];
+    }
+
+    /**
+     * @return The highest y of a block other than air in the column, or -1 if there is none. Everything above is air.
+     */
+    public int top(int x, int z)
+    {
+        if (generations == 0)
+            return findTop(x, z);
+
+        int[] top = heights(x, z).top;
+        int index = (z & 15) << 4 | (x & 15);
+        if (top[index] == UNKNOWN)
+            top[index] = findTop(x, z);
+        return top[index];
+    }
+
+    protected int findHighest(int x, int z, Block block)
+    {
+        int y = world.getChunkFromBlockCoords(x, z).getTopFilledSegment() + 15;
+        while (y >= 0 && world.getBlock(x, y, z) != block)
+            y--;
+        return y;
+    }
+
+    protected int findTop(int x, int z)
+    {
+        int y = world.getChunkFromBlockCoords(x, z).getTopFilledSegment() + 15;
+        while (y >= 0 && world.getBlock(x, y, z) == Blocks.air)
+            y--;
+        return y;
+    }
+
+    protected static class ChunkHeights
+    {
+        public final int[] surface = unknown();
+        public final int[] underwater = unknown();
+
+        public Block highestBlock;
+        public final int[] highest = unknown();
+
+        public final int[] top = unknown();
+
+        private static int[] unknown()
+        {
+            int[] heights = new int[256];
+            Arrays.fill(heights, UNKNOWN);
+            return heights;
+        }
+
+        public void invalidate(int index)
+        {
+            surface[index] = UNKNOWN;
+            underwater[index] = UNKNOWN;
+            highest[index] = UNKNOWN;
+            top[index] = UNKNOWN;
+        }
+
+        public void update(int index, int y, Block block)
+        {
+            surface[index] = UNKNOWN;
+            underwater[index] = UNKNOWN;
+            highest[index] = UNKNOWN;
+
+            // Only a block above the top, or air at the top, moves it
+            if (top[index] != UNKNOWN)
+            {
+                if (block != Blocks.air)
+                    top[index] = Math.max(top[index], y);
+                else if (y == top[index])
+                    top[index] = UNKNOWN;
+            }
+        }
+    }
+}
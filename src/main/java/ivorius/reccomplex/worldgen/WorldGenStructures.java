@@ -12,6 +12,7 @@ import ivorius.reccomplex.RecurrentComplex;
 import ivorius.reccomplex.structures.StructureInfo;
 import ivorius.reccomplex.structures.StructureInfos;
 import ivorius.reccomplex.structures.StructureRegistry;
+import ivorius.reccomplex.structures.YSelector;
 import ivorius.reccomplex.structures.generic.gentypes.NaturalGenerationInfo;
 import ivorius.reccomplex.structures.generic.gentypes.StaticGenerationInfo;
 import net.minecraft.util.ChunkCoordinates;
@@ -21,6 +22,7 @@ import net.minecraft.world.biome.BiomeGenBase;
 import net.minecraft.world.chunk.IChunkProvider;
 import org.apache.commons.lang3.tuple.Pair;
 
+import javax.annotation.Nullable;
 import java.util.List;
 import java.util.Random;
 
@@ -29,11 +31,50 @@ import java.util.Random;
  */
 public class WorldGenStructures implements IWorldGenerator
 {
+    private static final long NO_CHUNK = Long.MIN_VALUE;
+
+    private static long populatingChunk = NO_CHUNK;
+
+    /**
+     * @return Whether structures are currently generated for a chunk that is being populated.
+     */
+    public static boolean isPopulating()
+    {
+        return populatingChunk != NO_CHUNK;
+    }
+
+    /**
+     * @return The chunk structures are currently generated for, or null if no chunk is being populated.
+     */
+    @Nullable
+    public static ChunkCoordIntPair getPopulatingChunk()
+    {
+        return populatingChunk != NO_CHUNK ? new ChunkCoordIntPair((int) populatingChunk, (int) (populatingChunk >> 32)) : null;
+    }
+
     @Override
     public void generate(Random random, final int chunkX, final int chunkZ, final World world, IChunkProvider chunkGenerator, IChunkProvider chunkProvider)
+    {
+        long previous = populatingChunk;
+        populatingChunk = ChunkCoordIntPair.chunkXZ2Int(chunkX, chunkZ);
+        SurfaceHeightCache.begin(world);
+
+        try
+        {
+            generateInChunk(random, chunkX, chunkZ, world, chunkGenerator, chunkProvider);
+        }
+        finally
+        {
+            SurfaceHeightCache.end(world);
+            populatingChunk = previous;
+        }
+    }
+
+    protected void generateInChunk(Random random, final int chunkX, final int chunkZ, final World world, IChunkProvider chunkGenerator, IChunkProvider chunkProvider)
     {
         boolean worldWantsStructures = world.getWorldInfo().isMapFeaturesEnabled();
         StructureGenerationData data = StructureGenerationData.get(world);
+        StructureRegistry.Snapshot registry = StructureRegistry.INSTANCE.snapshot();
 
         generatePartialStructuresInChunk(random, chunkX, chunkZ, world, chunkGenerator, chunkProvider);
 
@@ -42,21 +83,24 @@ public class WorldGenStructures implements IWorldGenerator
             BiomeGenBase biomeGen = world.getBiomeGenForCoords(chunkX * 16, chunkZ * 16);
             ChunkCoordinates spawnPos = world.getSpawnPoint();
 
-            for (Pair<StructureInfo, StaticGenerationInfo> pair : StructureRegistry.INSTANCE.getStaticStructuresAt(chunkX, chunkZ, world, spawnPos))
+            for (Pair<StructureInfo, StaticGenerationInfo> pair : registry.getStaticStructuresAt(chunkX, chunkZ, world, spawnPos))
             {
                 RecurrentComplex.logger.trace(String.format("Spawning static structure at x = %d, z = %d", chunkX << 4, chunkZ << 4));
 
                 StaticGenerationInfo staticGenInfo = pair.getRight();
                 StructureInfo structureInfo = pair.getLeft();
-                String structureName = StructureRegistry.INSTANCE.structureID(structureInfo);
+                String structureName = registry.structureID(structureInfo);
 
                 int strucX = staticGenInfo.getPositionX(spawnPos);
                 int strucZ = staticGenInfo.getPositionZ(spawnPos);
 
-                StructureGenerator.randomInstantly(world, random, structureInfo, staticGenInfo.ySelector, strucX, strucZ, false, structureName);
+                if (RCConfig.strictChunkGeneration)
+                    StructureGenerator.randomChunkwise(world, random, structureInfo, staticGenInfo.ySelector, strucX, strucZ, false, structureName);
+                else
+                    StructureGenerator.randomInstantly(world, random, structureInfo, staticGenInfo.ySelector, strucX, strucZ, false, structureName);
             }
 
-            if (data.checkChunk(new ChunkCoordIntPair(chunkX, chunkZ)))
+            if (data.checkChunk(chunkX, chunkZ))
             {
                 boolean mayGenerate = RCConfig.isGenerationEnabled(biomeGen) && RCConfig.isGenerationEnabled(world.provider);
 
@@ -68,20 +112,53 @@ public class WorldGenStructures implements IWorldGenerator
 
                 if (mayGenerate)
                 {
-                    StructureSelector structureSelector = StructureRegistry.INSTANCE.getStructureSelector(biomeGen, world.provider);
+                    StructureSelector structureSelector = registry.getStructureSelector(biomeGen, world.provider);
                     List<Pair<StructureInfo, NaturalGenerationInfo>> generated = structureSelector.generatedStructures(random, chunkX, chunkZ, world, chunkGenerator, chunkProvider);
 
+                    GenerationBudget budget = GenerationBudget.get(world);
+                    int chunkCost = 0;
+
                     for (Pair<StructureInfo, NaturalGenerationInfo> pair : generated)
                     {
                         StructureInfo structureInfo = pair.getLeft();
                         NaturalGenerationInfo naturalGenInfo = pair.getRight();
-                        String structureName = StructureRegistry.INSTANCE.structureID(structureInfo);
+                        String structureName = registry.structureID(structureInfo);
 
                         int genX = chunkX * 16 + random.nextInt(16);
                         int genZ = chunkZ * 16 + random.nextInt(16);
 
-                        if (!naturalGenInfo.hasLimitations() || naturalGenInfo.getLimitations().areResolved(world, structureName))
-                            StructureGenerator.randomInstantly(world, random, structureInfo, naturalGenInfo.ySelector, genX, genZ, true, structureName);
+                        if (naturalGenInfo.hasLimitations() && !naturalGenInfo.getLimitations().areResolved(world, structureName))
+                        {
+                            PlacementStatistics.reject(PlacementStatistics.Stage.LIMITATION);
+                            continue;
+                        }
+
+                        int cost = registry.getCost(structureName);
+                        if (RCConfig.chunkGenerationCostBudget > 0 && chunkCost > 0 && chunkCost + cost > RCConfig.chunkGenerationCostBudget)
+                        {
+                            PlacementStatistics.reject(PlacementStatistics.Stage.BUDGET);
+                            continue;
+                        }
+
+                        int genY;
+                        if (RCConfig.structureGenerationTickBudget > 0 || !budget.fits(world, cost))
+                        {
+                            // The scheduler accounts for the cost when it generates the structure
+                            genY = StructureGenerator.randomScheduled(world, random, structureInfo, naturalGenInfo.ySelector, genX, genZ, structureName);
+                            if (genY != YSelector.DONT_GENERATE && RCConfig.structureGenerationTickBudget <= 0)
+                                budget.defer();
+                        }
+                        else
+                        {
+                            genY = RCConfig.strictChunkGeneration
+                                    ? StructureGenerator.randomChunkwise(world, random, structureInfo, naturalGenInfo.ySelector, genX, genZ, true, structureName)
+                                    : StructureGenerator.randomInstantly(world, random, structureInfo, naturalGenInfo.ySelector, genX, genZ, true, structureName);
+                            if (genY != YSelector.DONT_GENERATE)
+                                budget.consume(world, cost);
+                        }
+
+                        if (genY != YSelector.DONT_GENERATE)
+                            chunkCost += cost;
                     }
                 }
             }
@@ -92,19 +169,17 @@ public class WorldGenStructures implements IWorldGenerator
     {
         StructureGenerationData data = StructureGenerationData.get(world);
 
-        for (StructureGenerationData.Entry entry : data.getEntriesAt(new ChunkCoordIntPair(chunkX, chunkZ), true))
+        for (StructureGenerationData.Entry entry : data.getEntriesAt(chunkX, chunkZ, true))
         {
             StructureInfo structureInfo = StructureRegistry.INSTANCE.getStructure(entry.getStructureID());
 
             if (structureInfo != null)
             {
-                StructureGenerator.partially(structureInfo, world, random, entry.lowerCoord, entry.transform, StructureInfos.chunkBoundingBox(chunkX, chunkZ), 0, entry.getStructureID(), entry.instanceData, entry.firstTime);
+                entry.transformerSeeds.markGenerated(chunkX, chunkZ);
+                StructureGenerator.partially(structureInfo, world, random, entry.lowerCoord, entry.transform, StructureInfos.chunkBoundingBox(chunkX, chunkZ), 0, entry.getStructureID(), entry.getInstanceData(), entry.firstTime, entry.transformerSeeds);
 
-                if (entry.firstTime)
-                {
-                    entry.firstTime = false;
-                    data.markDirty();
-                }
+                entry.firstTime = false;
+                data.markEntryDirty(entry);
             }
         }
     }
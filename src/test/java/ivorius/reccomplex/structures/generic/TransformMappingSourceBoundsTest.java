@@ -0,0 +1,94 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.structures.generic;
+
+import ivorius.ivtoolkit.blocks.BlockCoord;
+import ivorius.ivtoolkit.math.AxisAlignedTransform2D;
+import net.minecraft.world.gen.structure.StructureBoundingBox;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Partial generation only visits the source bounds, so they have to hold exactly the blocks that land in the area.
+ */
+public class TransformMappingSourceBoundsTest
+{
+    private static final int WIDTH = 5;
+    private static final int HEIGHT = 3;
+    private static final int LENGTH = 2;
+
+    private static final BlockCoord ORIGIN = new BlockCoord(14, 60, -3);
+
+    private static final StructureBoundingBox[] AREAS = {
+            null,
+            new StructureBoundingBox(0, 0, 0, 15, 255, 15),
+            new StructureBoundingBox(16, 0, -16, 31, 255, -1),
+            new StructureBoundingBox(15, 61, -3, 16, 61, -2),
+            new StructureBoundingBox(-100, 0, -100, 100, 255, 100),
+    };
+
+    @Test
+    public void sourceBoundsMatchPlacedBlocks()
+    {
+        for (int rotation = 0; rotation < 4; rotation++)
+            for (boolean mirror : new boolean[]{false, true})
+            {
+                AxisAlignedTransform2D transform = AxisAlignedTransform2D.from(rotation, mirror);
+                StructureTemplate.TransformMapping mapping = new StructureTemplate.TransformMapping(transform, WIDTH, HEIGHT, LENGTH);
+
+                for (StructureBoundingBox area : AREAS)
+                {
+                    String message = transform + " in " + area;
+                    int[] expected = placedSourceBounds(mapping, area);
+                    StructureBoundingBox bounds = mapping.sourceBounds(ORIGIN, area);
+
+                    if (expected == null)
+                        assertNull(message, bounds);
+                    else
+                        assertArrayEquals(message, expected, bounds != null ? new int[]{bounds.minX, bounds.minY, bounds.minZ, bounds.maxX, bounds.maxY, bounds.maxZ} : null);
+                }
+            }
+    }
+
+    @Test
+    public void sourceBoundsOutsideAreaAreNull()
+    {
+        StructureTemplate.TransformMapping mapping = new StructureTemplate.TransformMapping(AxisAlignedTransform2D.from(1, true), WIDTH, HEIGHT, LENGTH);
+
+        assertNull(mapping.sourceBounds(ORIGIN, new StructureBoundingBox(-32, 0, -32, -17, 255, -17)));
+        assertNull(mapping.sourceBounds(ORIGIN, new StructureBoundingBox(0, 0, -16, 31, 59, 15)));
+    }
+
+    private static int[] placedSourceBounds(StructureTemplate.TransformMapping mapping, StructureBoundingBox area)
+    {
+        int[] bounds = null;
+
+        for (int z = 0; z < LENGTH; z++)
+            for (int y = 0; y < HEIGHT; y++)
+                for (int x = 0; x < WIDTH; x++)
+                {
+                    BlockCoord placed = mapping.apply(new BlockCoord(x, y, z), ORIGIN);
+                    if (area != null && !area.isVecInside(placed.x, placed.y, placed.z))
+                        continue;
+
+                    if (bounds == null)
+                        bounds = new int[]{x, y, z, x, y, z};
+                    else
+                    {
+                        bounds[0] = Math.min(bounds[0], x);
+                        bounds[1] = Math.min(bounds[1], y);
+                        bounds[2] = Math.min(bounds[2], z);
+                        bounds[3] = Math.max(bounds[3], x);
+                        bounds[4] = Math.max(bounds[4], y);
+                        bounds[5] = Math.max(bounds[5], z);
+                    }
+                }
+
+        return bounds;
+    }
+}
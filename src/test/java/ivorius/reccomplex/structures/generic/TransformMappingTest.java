@@ -0,0 +1,115 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.structures.generic;
+
+import ivorius.ivtoolkit.blocks.BlockCoord;
+import ivorius.ivtoolkit.math.AxisAlignedTransform2D;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Mappings replace {@link AxisAlignedTransform2D#apply} during generation, so they have to agree with it for every
+ * rotation and mirroring, also when width and length differ.
+ */
+public class TransformMappingTest
+{
+    private static final int WIDTH = 5;
+    private static final int HEIGHT = 3;
+    private static final int LENGTH = 2;
+
+    private static List<AxisAlignedTransform2D> allTransforms()
+    {
+        List<AxisAlignedTransform2D> transforms = new ArrayList<>();
+        for (int rotation = 0; rotation < 4; rotation++)
+        {
+            transforms.add(AxisAlignedTransform2D.from(rotation, false));
+            transforms.add(AxisAlignedTransform2D.from(rotation, true));
+        }
+        return transforms;
+    }
+
+    @Test
+    public void transformedSizeSwapsAxesOnOddRotations()
+    {
+        for (AxisAlignedTransform2D transform : allTransforms())
+        {
+            StructureTemplate.TransformMapping mapping = new StructureTemplate.TransformMapping(transform, WIDTH, HEIGHT, LENGTH);
+            boolean swapsAxes = transform.getRotation() % 2 == 1;
+
+            assertEquals(transform.toString(), swapsAxes ? LENGTH : WIDTH, mapping.transformedWidth);
+            assertEquals(transform.toString(), swapsAxes ? WIDTH : LENGTH, mapping.transformedLength);
+        }
+    }
+
+    @Test
+    public void mappingAgreesWithTransform()
+    {
+        int[] size = {WIDTH, HEIGHT, LENGTH};
+
+        for (AxisAlignedTransform2D transform : allTransforms())
+        {
+            StructureTemplate.TransformMapping mapping = new StructureTemplate.TransformMapping(transform, WIDTH, HEIGHT, LENGTH);
+
+            for (int z = 0; z < LENGTH; z++)
+                for (int y = 0; y < HEIGHT; y++)
+                    for (int x = 0; x < WIDTH; x++)
+                    {
+                        BlockCoord expected = transform.apply(new BlockCoord(x, y, z), size);
+
+                        assertEquals(transform + " at " + x + ", " + z, expected.x, mapping.x(x, z));
+                        assertEquals(transform + " at " + x + ", " + z, expected.z, mapping.z(x, z));
+                        assertEquals(transform + " at " + x + ", " + z, expected.add(10, 20, 30), mapping.apply(new BlockCoord(x, y, z), new BlockCoord(10, 20, 30)));
+                    }
+        }
+    }
+
+    @Test
+    public void mappingCoversTransformedAreaOnce()
+    {
+        for (AxisAlignedTransform2D transform : allTransforms())
+        {
+            StructureTemplate.TransformMapping mapping = new StructureTemplate.TransformMapping(transform, WIDTH, HEIGHT, LENGTH);
+            Set<Integer> transformedIndices = new HashSet<>();
+
+            for (int z = 0; z < LENGTH; z++)
+                for (int x = 0; x < WIDTH; x++)
+                {
+                    int transformedX = mapping.x(x, z), transformedZ = mapping.z(x, z);
+
+                    assertTrue(transform.toString(), transformedX >= 0 && transformedX < mapping.transformedWidth);
+                    assertTrue(transform.toString(), transformedZ >= 0 && transformedZ < mapping.transformedLength);
+                    assertTrue(transform.toString(), transformedIndices.add(transformedX + transformedZ * mapping.transformedWidth));
+                }
+
+            assertEquals(transform.toString(), WIDTH * LENGTH, transformedIndices.size());
+        }
+    }
+
+    @Test
+    public void sourceInvertsMapping()
+    {
+        for (AxisAlignedTransform2D transform : allTransforms())
+        {
+            StructureTemplate.TransformMapping mapping = new StructureTemplate.TransformMapping(transform, WIDTH, HEIGHT, LENGTH);
+
+            for (int z = 0; z < LENGTH; z++)
+                for (int x = 0; x < WIDTH; x++)
+                {
+                    int transformedX = mapping.x(x, z), transformedZ = mapping.z(x, z);
+
+                    assertEquals(transform + " at " + x + ", " + z, x, mapping.sourceX(transformedX, transformedZ));
+                    assertEquals(transform + " at " + x + ", " + z, z, mapping.sourceZ(transformedX, transformedZ));
+                }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.utils;
+
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockRail;
+import net.minecraft.block.BlockStairs;
+import net.minecraft.block.BlockTorch;
+import net.minecraft.block.material.Material;
+import net.minecraft.world.World;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Baked transforms are shared by every generation of a template, so blocks whose placed state depends on their
+ * surroundings must never be baked: a rail placed next to another rail curves, one placed alone doesn't.
+ */
+public class BlockTransformsTest
+{
+    @Test
+    public void plainBlocksAreContextFree()
+    {
+        assertTrue(BlockTransforms.isTransformContextFree(new Block(Material.rock) {}));
+    }
+
+    @Test
+    public void railsAreNotContextFree()
+    {
+        assertFalse(BlockTransforms.isTransformContextFree(new BlockRail() {}));
+    }
+
+    @Test
+    public void stairsAreNotContextFree()
+    {
+        assertFalse(BlockTransforms.isTransformContextFree(new BlockStairs(new Block(Material.wood) {}, 0) {}));
+    }
+
+    @Test
+    public void torchesAreNotContextFree()
+    {
+        assertFalse(BlockTransforms.isTransformContextFree(new BlockTorch() {}));
+    }
+
+    @Test
+    public void neighborDependentModBlocksAreNotContextFree()
+    {
+        Block block = new Block(Material.rock)
+        {
+            @Override
+            public void onBlockAdded(World world, int x, int y, int z)
+            {
+                world.setBlockMetadataWithNotify(x, y, z, world.isAirBlock(x + 1, y, z) ? 0 : 1, 2);
+            }
+        };
+
+        assertFalse(BlockTransforms.isTransformContextFree(block));
+    }
+}
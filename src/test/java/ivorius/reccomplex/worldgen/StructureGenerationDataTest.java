@@ -0,0 +1,198 @@
+/*
+ *  Copyright (c) 2014, Lukas Tenbrink.
+ *  * http://lukas.axxim.net
+ */
+
+package ivorius.reccomplex.worldgen;
+
+import ivorius.ivtoolkit.blocks.BlockCoord;
+import ivorius.ivtoolkit.math.AxisAlignedTransform2D;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.world.gen.structure.StructureBoundingBox;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.junit.Assert.*;
+
+/**
+ * Structures that aren't registered have no bounding box, so unless one is set, entries live in their home region alone.
+ */
+public class StructureGenerationDataTest
+{
+    private static final String STRUCTURE = "test_structure";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StructureGenerationData newData() throws IOException
+    {
+        StructureGenerationData data = new StructureGenerationData();
+        data.setDirectory(folder.getRoot());
+        return data;
+    }
+
+    private static StructureGenerationData.Entry onlyEntry(StructureGenerationData.Region region)
+    {
+        assertEquals(1, region.entries.size());
+        return region.entries.iterator().next();
+    }
+
+    private static void assertSameEntry(StructureGenerationData.Entry expected, StructureGenerationData.Entry actual)
+    {
+        assertNotNull(actual);
+        assertEquals(expected.getUuid(), actual.getUuid());
+        assertEquals(expected.getStructureID(), actual.getStructureID());
+        assertEquals(expected.getLowerCoord().x, actual.getLowerCoord().x);
+        assertEquals(expected.getLowerCoord().y, actual.getLowerCoord().y);
+        assertEquals(expected.getLowerCoord().z, actual.getLowerCoord().z);
+        assertEquals(expected.getTransform().getRotation(), actual.getTransform().getRotation());
+        assertEquals(expected.getTransform().isMirrorX(), actual.getTransform().isMirrorX());
+        assertEquals(expected.isHasBeenGenerated(), actual.isHasBeenGenerated());
+    }
+
+    @Test
+    public void regionRoundTrip() throws IOException
+    {
+        StructureGenerationData data = newData();
+        StructureGenerationData.Entry entry = new StructureGenerationData.Entry(UUID.randomUUID(), STRUCTURE, new BlockCoord(40, 64, 70), AxisAlignedTransform2D.from(3, true), true);
+        entry.getTransformerSeeds().markGenerated(2, 4);
+        data.addEntry(entry);
+        data.checkChunk(3, 4);
+        data.checkChunkFinal(31, 31);
+
+        NBTTagCompound compound = data.writeRegion(data.region(0, 0));
+
+        StructureGenerationData read = newData();
+        StructureGenerationData.Region region = new StructureGenerationData.Region(0, 0);
+        read.readRegion(region, compound);
+
+        assertTrue(region.isChecked(3, 4, false));
+        assertFalse(region.isChecked(3, 4, true));
+        assertTrue(region.isChecked(31, 31, true));
+        assertFalse(region.isChecked(4, 3, false));
+
+        StructureGenerationData.Entry readEntry = onlyEntry(region);
+        assertSameEntry(entry, readEntry);
+        assertSame(readEntry, read.getEntry(entry.getUuid()));
+        assertTrue(readEntry.getTransformerSeeds().isGenerated(2 * 16, 4 * 16));
+        assertFalse(readEntry.getTransformerSeeds().isGenerated(3 * 16, 4 * 16));
+    }
+
+    @Test
+    public void regionsAreReadOnDemand() throws IOException
+    {
+        StructureGenerationData data = newData();
+        StructureGenerationData.Entry entry = new StructureGenerationData.Entry(UUID.randomUUID(), STRUCTURE, new BlockCoord(1000, 64, -1000), AxisAlignedTransform2D.from(1, false), false);
+        data.addEntry(entry);
+        data.checkChunk(1000 >> 4, -1000 >> 4);
+
+        NBTTagCompound compound = new NBTTagCompound();
+        data.writeToNBT(compound);
+        assertTrue(new File(folder.getRoot(), "r.1.-2.dat").exists());
+
+        StructureGenerationData read = new StructureGenerationData();
+        read.readFromNBT(compound);
+        read.setDirectory(folder.getRoot());
+
+        assertEquals(1, read.getInstanceCount(STRUCTURE));
+        assertNull(read.getEntry(entry.getUuid()));
+
+        assertTrue(read.isChunkChecked(1000 >> 4, -1000 >> 4));
+        assertFalse(read.isChunkChecked(0, 0));
+        assertSameEntry(entry, read.getEntry(entry.getUuid()));
+        assertEquals(1, read.getInstanceCount(STRUCTURE));
+    }
+
+    @Test
+    public void unloadedRegionsAreReadAgain() throws IOException
+    {
+        StructureGenerationData data = newData();
+        StructureGenerationData.Entry entry = new StructureGenerationData.Entry(UUID.randomUUID(), STRUCTURE, new BlockCoord(-20, 64, 5), AxisAlignedTransform2D.ORIGINAL, true);
+        data.addEntry(entry);
+
+        // Regions that aren't saved yet have to stay
+        data.unloadRegions(0);
+        assertSame(entry, data.getEntry(entry.getUuid()));
+
+        data.writeToNBT(new NBTTagCompound());
+        data.unloadRegions(0);
+        assertNull(data.getEntry(entry.getUuid()));
+
+        data.isChunkChecked(-20 >> 4, 5 >> 4);
+        assertSameEntry(entry, data.getEntry(entry.getUuid()));
+        assertSame(data.getEntry(entry.getUuid()), onlyEntry(data.region(-1, 0)));
+        assertEquals(1, data.getInstanceCount(STRUCTURE));
+    }
+
+    @Test
+    public void savingDoesNotReadHomeRegions() throws IOException
+    {
+        StructureGenerationData data = newData();
+        StructureGenerationData.Entry entry = new StructureGenerationData.Entry(UUID.randomUUID(), STRUCTURE, new BlockCoord(500, 64, 10), AxisAlignedTransform2D.ORIGINAL, true);
+        entry.boundingBox = new StructureBoundingBox(500, 64, 10, 540, 80, 20);
+        data.addEntry(entry);
+        data.writeToNBT(new NBTTagCompound());
+
+        // The spanning region keeps the entry while its home region is dropped
+        data.region(1, 0);
+        data.unloadRegions(1);
+        assertNull(data.regions.get(StructureGenerationData.regionKey(0, 0)));
+        assertSame(entry, data.getEntry(entry.getUuid()));
+
+        data.checkChunk(40, 0);
+        NBTTagCompound compound = new NBTTagCompound();
+        data.writeToNBT(compound);
+        assertNull(data.regions.get(StructureGenerationData.regionKey(0, 0)));
+
+        StructureGenerationData read = new StructureGenerationData();
+        read.readFromNBT(compound);
+        read.setDirectory(folder.getRoot());
+
+        assertTrue(read.isChunkChecked(40, 0));
+        assertSameEntry(entry, onlyEntry(read.region(1, 0)));
+        assertSame(read.getEntry(entry.getUuid()), onlyEntry(read.region(0, 0)));
+    }
+
+    @Test
+    public void legacyEntriesMoveToRegions() throws IOException
+    {
+        StructureGenerationData.Entry first = new StructureGenerationData.Entry(UUID.randomUUID(), STRUCTURE, new BlockCoord(10, 70, 10), AxisAlignedTransform2D.from(2, false), true);
+        StructureGenerationData.Entry second = new StructureGenerationData.Entry(UUID.randomUUID(), STRUCTURE, new BlockCoord(600, 70, 10), AxisAlignedTransform2D.from(0, true), false);
+
+        NBTTagList entries = new NBTTagList();
+        for (StructureGenerationData.Entry entry : new StructureGenerationData.Entry[]{first, second})
+        {
+            NBTTagCompound entryCompound = new NBTTagCompound();
+            entry.writeToNBT(entryCompound);
+            entries.appendTag(entryCompound);
+        }
+        NBTTagCompound legacy = new NBTTagCompound();
+        legacy.setTag("entries", entries);
+
+        StructureGenerationData data = new StructureGenerationData();
+        data.readFromNBT(legacy);
+        data.setDirectory(folder.getRoot());
+
+        assertSameEntry(first, data.getEntry(first.getUuid()));
+        assertSameEntry(second, data.getEntry(second.getUuid()));
+        assertEquals(2, data.getInstanceCount(STRUCTURE));
+
+        NBTTagCompound compound = new NBTTagCompound();
+        data.writeToNBT(compound);
+        assertFalse(compound.hasKey("entries"));
+
+        StructureGenerationData read = new StructureGenerationData();
+        read.readFromNBT(compound);
+        read.setDirectory(folder.getRoot());
+
+        assertEquals(2, read.getInstanceCount(STRUCTURE));
+        assertSameEntry(first, onlyEntry(read.region(0, 0)));
+        assertSameEntry(second, onlyEntry(read.region(1, 0)));
+    }
+}